@@ -0,0 +1,117 @@
+package com.github.jarome.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jarome.config.NatsMessageConverter;
+import com.github.jarome.config.NatsMessageReader;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.messaging.converter.SmartMessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener side conversion of a message into the onMessage parameter.
+ * <p>
+ * {@code legacy*} is the conversion of the 0.0.3 release (byte[] -> String -> spring Message -> composite converter),
+ * {@code reader*} is the reader resolved once per listener that consumers use now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private NatsMessageConverter natsMessageConverter;
+    private Type listType;
+    private MethodParameter listParameter;
+    private Message stringMessage;
+    private Message orderMessage;
+    private Message orderListMessage;
+    private NatsMessageReader stringReader;
+    private NatsMessageReader orderReader;
+    private NatsMessageReader orderListReader;
+
+    @Setup
+    public void setup() throws Exception {
+        natsMessageConverter = new NatsMessageConverter();
+        listType = ResolvableType.forClassWithGenerics(List.class, Order.class).getType();
+        listParameter = OrderListListener.methodParameter();
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            orders.add(Order.sample(i));
+        }
+        stringMessage = message(objectMapper.writeValueAsBytes(Order.sample(1)));
+        orderMessage = message(objectMapper.writeValueAsBytes(Order.sample(1)));
+        orderListMessage = message(objectMapper.writeValueAsBytes(orders));
+        stringReader = new NatsMessageReader(natsMessageConverter, String.class, null, null);
+        orderReader = new NatsMessageReader(natsMessageConverter, Order.class, null, null);
+        orderListReader = new NatsMessageReader(natsMessageConverter, listType, listParameter, null);
+    }
+
+    static Message message(byte[] data) {
+        return NatsMessage.builder().subject("bench.order").data(data).build();
+    }
+
+    @Benchmark
+    public Object legacyString() {
+        return legacyConvert(stringMessage, String.class, null);
+    }
+
+    @Benchmark
+    public Object readerString() throws Exception {
+        return stringReader.read(stringMessage);
+    }
+
+    @Benchmark
+    public Object legacyPojo() {
+        return legacyConvert(orderMessage, Order.class, null);
+    }
+
+    @Benchmark
+    public Object readerPojo() throws Exception {
+        return orderReader.read(orderMessage);
+    }
+
+    @Benchmark
+    public Object legacyGeneric() {
+        return legacyConvert(orderListMessage, listType, listParameter);
+    }
+
+    @Benchmark
+    public Object readerGeneric() throws Exception {
+        return orderListReader.read(orderListMessage);
+    }
+
+    private Object legacyConvert(Message msg, Type parameterType, MethodParameter methodParameter) {
+        String value = new String(msg.getData(), StandardCharsets.UTF_8);
+        if (String.class.equals(parameterType)) {
+            return value;
+        }
+        if (parameterType instanceof Class) {
+            return natsMessageConverter.getMessageConverter().fromMessage(MessageBuilder.withPayload(value).build(), (Class<?>) parameterType);
+        }
+        return ((SmartMessageConverter) natsMessageConverter.getMessageConverter()).fromMessage(MessageBuilder.withPayload(value).build(),
+                (Class<?>) ((ParameterizedType) parameterType).getRawType(), methodParameter);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.jarome.benchmark;
+
+import com.github.jarome.config.BatchMessageDispatcher;
+import com.github.jarome.config.BlockingRejectedExecutionHandler;
+import com.github.jarome.config.ExecutorMessageDispatcher;
+import com.github.jarome.config.HeaderKeyExtractor;
+import com.github.jarome.config.MessageDispatcher;
+import com.github.jarome.config.OrderedMessageDispatcher;
+import com.github.jarome.config.ThreadFactoryImpl;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand off of messages from the fetching thread to the workers, for every dispatcher the consumers use.
+ * {@code work} is the CPU the handler burns per message, in {@link Blackhole#consumeCPU} tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    @Param({"executor", "ordered", "batch"})
+    private String dispatcherType;
+
+    @Param({"0", "1000"})
+    private long work;
+
+    @Param({"16"})
+    private int threads;
+
+    private MessageDispatcher dispatcher;
+    private ExecutorService executor;
+    private ScheduledExecutorService lingerScheduler;
+    private Message[] messages;
+    private final Semaphore handled = new Semaphore(0);
+    private final Runnable done = handled::release;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        messages = new Message[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            Headers headers = new Headers().add("Nats-Msg-Key", "key-" + i % 64);
+            messages[i] = NatsMessage.builder().subject("bench.order." + i % 64).headers(headers).data(new byte[128]).build();
+        }
+        switch (dispatcherType) {
+            case "ordered":
+                dispatcher = new OrderedMessageDispatcher("bench", threads, MESSAGES / threads, new HeaderKeyExtractor("Nats-Msg-Key"), msg -> Blackhole.consumeCPU(work));
+                break;
+            case "batch":
+                executor = newPool();
+                lingerScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("NatsBatchLinger_", true));
+                dispatcher = new BatchMessageDispatcher(executor, lingerScheduler, 100, 10, batch -> batch.forEach(msg -> Blackhole.consumeCPU(work)));
+                break;
+            default:
+                executor = newPool();
+                dispatcher = new ExecutorMessageDispatcher(executor, msg -> Blackhole.consumeCPU(work));
+        }
+    }
+
+    private ThreadPoolExecutor newPool() {
+        return new ThreadPoolExecutor(threads, threads, 60_000L, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<>(MESSAGES),
+                new ThreadFactoryImpl("NatsConsumeThread_bench_"), new BlockingRejectedExecutionHandler());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (lingerScheduler != null) {
+            lingerScheduler.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void dispatch() throws InterruptedException {
+        for (Message msg : messages) {
+            dispatcher.dispatch(msg, done);
+        }
+        handled.acquire(MESSAGES);
+    }
+}
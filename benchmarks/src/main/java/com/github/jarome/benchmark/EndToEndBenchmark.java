@@ -0,0 +1,142 @@
+package com.github.jarome.benchmark;
+
+import com.github.jarome.config.BlockingRejectedExecutionHandler;
+import com.github.jarome.config.ExecutorMessageDispatcher;
+import com.github.jarome.config.MessageDispatcher;
+import com.github.jarome.config.NatsMessageConverter;
+import com.github.jarome.config.NatsTemplate;
+import com.github.jarome.config.PullMessageService;
+import com.github.jarome.config.ThreadFactoryImpl;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Nats;
+import io.nats.client.PullSubscribeOptions;
+import io.nats.client.PushSubscribeOptions;
+import io.nats.client.api.ConsumerConfiguration;
+import io.nats.client.api.StorageType;
+import io.nats.client.api.StreamConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish and consume throughput against a running nats-server with JetStream enabled
+ * ({@code nats-server -js}, url from {@code -Dnats.url}, default {@code nats://localhost:4222}).
+ * Every invocation publishes a burst of orders asynchronously through {@link NatsTemplate} and waits until the
+ * consumer acked all of them. The benchmark creates and deletes its own memory stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final int MESSAGES = 1000;
+    private static final String STREAM = "NATS_STARTER_BENCH";
+    private static final String SUBJECT = "nats.starter.bench";
+
+    @Param({"pull", "push"})
+    private String mode;
+
+    @Param({"16"})
+    private int threads;
+
+    @Param({"100"})
+    private int pullBatchSize;
+
+    private Connection connection;
+    private JetStreamManagement jetStreamManagement;
+    private NatsTemplate natsTemplate;
+    private ThreadPoolExecutor threadPool;
+    private PullMessageService pullMessageService;
+    private Thread pullThread;
+    private Dispatcher pushDispatcher;
+    private final Semaphore acked = new Semaphore(0);
+    private Order[] orders;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        connection = Nats.connect(System.getProperty("nats.url", "nats://localhost:4222"));
+        jetStreamManagement = connection.jetStreamManagement();
+        try {
+            jetStreamManagement.deleteStream(STREAM);
+        } catch (Exception ignored) {
+            //the stream is not there yet
+        }
+        jetStreamManagement.addStream(StreamConfiguration.builder().name(STREAM).subjects(SUBJECT).storageType(StorageType.Memory).build());
+        JetStream jetStream = connection.jetStream();
+        natsTemplate = new NatsTemplate(jetStream, new NatsMessageConverter());
+        orders = new Order[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            orders[i] = Order.sample(i);
+        }
+
+        threadPool = new ThreadPoolExecutor(threads, threads, 60_000L, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<>(2000),
+                new ThreadFactoryImpl("NatsConsumeThread_bench_"), new BlockingRejectedExecutionHandler());
+        MessageDispatcher messageDispatcher = new ExecutorMessageDispatcher(threadPool, msg -> {
+            msg.ack();
+            acked.release();
+        });
+        ConsumerConfiguration.Builder builder = ConsumerConfiguration.builder().maxAckPending(threads + 2000L);
+        if ("push".equals(mode)) {
+            pushDispatcher = connection.createDispatcher();
+            jetStream.subscribe(SUBJECT, pushDispatcher, msg -> messageDispatcher.dispatch(msg, () -> {
+            }), false, PushSubscribeOptions.builder().stream(STREAM).configuration(builder.build()).build());
+        } else {
+            JetStreamSubscription sub = jetStream.subscribe(SUBJECT, PullSubscribeOptions.builder().stream(STREAM)
+                    .durable("bench-pull").configuration(builder.build()).build());
+            pullMessageService = new PullMessageService(sub, threads + 2000, pullBatchSize, 1000L, 1000L, 0L,
+                    messageDispatcher, ConsumerMetrics.NOOP);
+            pullThread = new ThreadFactoryImpl("NatsPullMessageService_bench_").newThread(pullMessageService);
+            pullThread.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (pullMessageService != null) {
+            pullMessageService.stop();
+            pullThread.join(5000L);
+        }
+        if (pushDispatcher != null) {
+            connection.closeDispatcher(pushDispatcher);
+        }
+        threadPool.shutdownNow();
+        jetStreamManagement.deleteStream(STREAM);
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void publishAndConsume() throws InterruptedException {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            futures[i] = natsTemplate.publishAsync(SUBJECT, orders[i]);
+        }
+        CompletableFuture.allOf(futures).join();
+        acked.acquire(MESSAGES);
+    }
+}
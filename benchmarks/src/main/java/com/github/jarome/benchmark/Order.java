@@ -0,0 +1,60 @@
+package com.github.jarome.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of the benchmarks, a typical business message
+ */
+public class Order {
+    private long id;
+    private String customer;
+    private BigDecimal amount;
+    private List<String> items;
+
+    public static Order sample(long id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setCustomer("customer-" + id % 100);
+        order.setAmount(BigDecimal.valueOf(id * 7 % 10000, 2));
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            items.add("sku-" + (id + i));
+        }
+        order.setItems(items);
+        return order;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(String customer) {
+        this.customer = customer;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public List<String> getItems() {
+        return items;
+    }
+
+    public void setItems(List<String> items) {
+        this.items = items;
+    }
+}
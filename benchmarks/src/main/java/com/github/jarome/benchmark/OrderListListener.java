@@ -0,0 +1,24 @@
+package com.github.jarome.benchmark;
+
+import com.github.jarome.annotation.NatsListener;
+import org.springframework.core.MethodParameter;
+
+import java.util.List;
+
+/**
+ * Listener of a generic type, source of the {@link MethodParameter} the starter resolves for such listeners
+ */
+public class OrderListListener implements NatsListener<List<Order>> {
+
+    public static MethodParameter methodParameter() {
+        try {
+            return new MethodParameter(OrderListListener.class.getMethod("onMessage", List.class), 0);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onMessage(List<Order> message) {
+    }
+}
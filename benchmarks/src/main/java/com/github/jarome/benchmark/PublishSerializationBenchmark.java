@@ -0,0 +1,84 @@
+package com.github.jarome.benchmark;
+
+import com.github.jarome.config.NatsMessageConverter;
+import com.github.jarome.config.NatsTemplate;
+import io.nats.client.JetStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of {@link NatsTemplate} publishes. The JetStream behind the template drops every message,
+ * so only the work done by the template is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublishSerializationBenchmark {
+
+    private static final String SUBJECT = "bench.order";
+
+    private NatsTemplate natsTemplate;
+    private Order order;
+    private String text;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        natsTemplate = new NatsTemplate(droppingJetStream(), new NatsMessageConverter());
+        order = Order.sample(1);
+        text = "order-1 customer-1 sku-1 sku-2 sku-3 sku-4 sku-5";
+        bytes = text.getBytes();
+    }
+
+    static JetStream droppingJetStream() {
+        return (JetStream) Proxy.newProxyInstance(JetStream.class.getClassLoader(), new Class<?>[]{JetStream.class}, (proxy, method, args) -> {
+            if (method.getName().equals("publishAsync")) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : method.getName().equals("equals") ? proxy == args[0] : "droppingJetStream";
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public Object bytes() {
+        return natsTemplate.publish(SUBJECT, bytes);
+    }
+
+    @Benchmark
+    public Object string() {
+        return natsTemplate.publish(SUBJECT, text);
+    }
+
+    @Benchmark
+    public Object pojoDefault() {
+        return natsTemplate.publish(SUBJECT, order);
+    }
+
+    @Benchmark
+    public Object pojoJsonCodec() {
+        return natsTemplate.publish(SUBJECT, order, null, "application/json");
+    }
+
+    @Benchmark
+    public Object pojoAsync() {
+        return natsTemplate.publishAsync(SUBJECT, order);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.jarome.benchmark;
+
+import com.github.jarome.config.BlockingRejectedExecutionHandler;
+import com.github.jarome.config.ExecutorMessageDispatcher;
+import com.github.jarome.config.PullMessageService;
+import com.github.jarome.config.ThreadFactoryImpl;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pull mode throughput of {@link PullMessageService} without a server: an in-process subscription fills every
+ * pull request at once, so the credit bookkeeping, the hand off and the workers are what is measured.
+ * Use {@link EndToEndBenchmark} for the numbers against a real nats-server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PullLoopBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    @Param({"10", "100"})
+    private int pullBatchSize;
+
+    @Param({"0", "1000"})
+    private long work;
+
+    @Param({"16"})
+    private int threads;
+
+    private ThreadPoolExecutor threadPool;
+    private PullMessageService pullMessageService;
+    private Thread pullThread;
+    private final Semaphore handled = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        threadPool = new ThreadPoolExecutor(threads, threads, 60_000L, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<>(2000),
+                new ThreadFactoryImpl("NatsConsumeThread_bench_"), new BlockingRejectedExecutionHandler());
+        ExecutorMessageDispatcher dispatcher = new ExecutorMessageDispatcher(threadPool, msg -> {
+            Blackhole.consumeCPU(work);
+            handled.release();
+        });
+        pullMessageService = new PullMessageService(inProcessSubscription(), threads + 2000, pullBatchSize, 1000L, 1000L, 0L,
+                dispatcher, ConsumerMetrics.NOOP);
+        pullThread = new ThreadFactoryImpl("NatsPullMessageService_bench_").newThread(pullMessageService);
+        pullThread.start();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetHandled() {
+        //the loop never stops, do not count what was handled between iterations
+        handled.drainPermits();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        pullMessageService.stop();
+        pullThread.interrupt();
+        pullThread.join(5000L);
+        threadPool.shutdownNow();
+    }
+
+    /**
+     * A subscription that answers every pull request with as many messages as asked for
+     */
+    static JetStreamSubscription inProcessSubscription() {
+        BlockingQueue<Message> delivered = new LinkedBlockingQueue<>();
+        Message message = NatsMessage.builder().subject("bench.order").data(new byte[128]).build();
+        return (JetStreamSubscription) Proxy.newProxyInstance(JetStreamSubscription.class.getClassLoader(), new Class<?>[]{JetStreamSubscription.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "pull":
+                case "pullNoWait":
+                case "pullExpiresIn":
+                    for (int i = 0; i < (Integer) args[0]; i++) {
+                        delivered.add(message);
+                    }
+                    return null;
+                case "nextMessage":
+                    long timeout = args[0] instanceof Duration ? ((Duration) args[0]).toNanos() : TimeUnit.MILLISECONDS.toNanos((Long) args[0]);
+                    return delivered.poll(timeout, TimeUnit.NANOSECONDS);
+                case "isActive":
+                    return true;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "inProcessSubscription";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void pull() throws InterruptedException {
+        handled.acquire(MESSAGES);
+    }
+}
@@ -1,10 +1,16 @@
 package com.github.jarome;
 
 
+import com.github.jarome.config.ConnectionPoolProperties;
 import com.github.jarome.config.ConsumerProperties;
+import com.github.jarome.config.NatsConnectionPool;
 import com.github.jarome.config.NatsMessageConverter;
 import com.github.jarome.config.NatsTemplate;
+import com.github.jarome.config.PublishWindow;
+import com.github.jarome.config.PublisherProperties;
+import com.github.jarome.metrics.NatsMetricsFactory;
 import io.nats.client.Connection;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -16,23 +22,37 @@ import java.io.IOException;
 
 @Configuration
 @ComponentScan
-@EnableConfigurationProperties({ConsumerProperties.class})
+@EnableConfigurationProperties({ConsumerProperties.class, PublisherProperties.class, ConnectionPoolProperties.class})
 @DependsOn({"natsConnection", "natsMessageConverter"})
 public class NatsAutoConfiguration {
 
     private final Connection connection;
     private final NatsMessageConverter natsMessageConverter;
+    private final PublisherProperties publisherProperties;
 
-    public NatsAutoConfiguration(Connection connection, NatsMessageConverter natsMessageConverter) {
+    public NatsAutoConfiguration(Connection connection, NatsMessageConverter natsMessageConverter, PublisherProperties publisherProperties) {
         this.connection = connection;
         this.natsMessageConverter = natsMessageConverter;
+        this.publisherProperties = publisherProperties;
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public NatsTemplate natsTemplate() {
+    public NatsTemplate natsTemplate(ObjectProvider<NatsMetricsFactory> natsMetricsFactory, NatsConnectionPool natsConnectionPool) {
         try {
-            return new NatsTemplate(connection.jetStream(), natsMessageConverter);
+            NatsTemplate natsTemplate = new NatsTemplate(connection, connection.jetStream(), natsMessageConverter);
+            if (publisherProperties.getMaxInFlight() > 0 || publisherProperties.getMaxInFlightBytes() > 0) {
+                natsTemplate.setPublishWindow(new PublishWindow(publisherProperties.getMaxInFlight(), publisherProperties.getMaxInFlightBytes(), publisherProperties.isBlockWhenFull(), publisherProperties.getMaxBlockTime()));
+            }
+            natsTemplate.setRetries(publisherProperties.getRetries());
+            natsTemplate.setCompressor(natsMessageConverter.resolveCompressor(publisherProperties.getCompression()));
+            natsTemplate.setCompressionThreshold(publisherProperties.getCompressionThreshold());
+            natsTemplate.setMaxPendingRequests(publisherProperties.getMaxPendingRequests());
+            if (natsConnectionPool.size() > 1) {
+                natsTemplate.setConnectionPool(natsConnectionPool);
+            }
+            natsTemplate.setPublisherMetrics(natsMetricsFactory.getIfAvailable(() -> NatsMetricsFactory.NOOP).publisherMetrics(natsTemplate));
+            return natsTemplate;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,15 @@
+package com.github.jarome.annotation;
+
+/**
+ * How the messages of a consumer are executed
+ */
+public enum ExecutorType {
+    /**
+     * 平台线程池, consumeThreadNumber ~ consumeThreadMax个线程
+     */
+    PLATFORM,
+    /**
+     * 每条消息一个虚拟线程, 并发数不超过consumeThreadMax, 需要Java 21
+     */
+    VIRTUAL
+}
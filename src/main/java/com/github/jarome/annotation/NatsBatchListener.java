@@ -0,0 +1,12 @@
+package com.github.jarome.annotation;
+
+import java.util.List;
+
+/**
+ * Implement this interface instead of {@link NatsListener} to receive the messages in batches.
+ * Throw {@link com.github.jarome.common.exception.NatsBatchException} to nak only part of the batch,
+ * any other exception naks the whole batch
+ */
+public interface NatsBatchListener<T> {
+    void onMessage(List<T> messages);
+}
@@ -0,0 +1,15 @@
+package com.github.jarome.annotation;
+
+import io.nats.client.Message;
+
+/**
+ * Extracts the ordering key of a message, messages with the same key are handled one after another.
+ * Register the implementation as a bean and reference it by name in {@link NatsMessageListener#orderKeyExtractor()}
+ */
+public interface NatsMessageKeyExtractor {
+    /**
+     * @param message received message
+     * @return ordering key, null when the message has no key
+     */
+    String extractKey(Message message);
+}
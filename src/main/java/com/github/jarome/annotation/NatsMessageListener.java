@@ -11,7 +11,7 @@ public @interface NatsMessageListener {
     String durable() default "";
 
     /**
-     * push 模式加
+     * push 模式加, 设置后为push模式
      */
     String deliverSubject() default "";
 
@@ -24,11 +24,87 @@ public @interface NatsMessageListener {
 
     String stream();
 
+    /**
+     * stream存储类型 File/Memory, 空为不配置(新建stream取File);
+     * stream配置在新建stream时使用, 已存在的stream只更新配置了且不同的项; 同一stream按监听器bean顺序先配置的为准, nats.streams中的配置优先
+     */
+    String streamStorage() default "";
+
+    /**
+     * stream副本数, 0为不配置
+     */
+    int streamReplicas() default 0;
+
+    /**
+     * stream最大字节数, -1不限制, 0为不配置
+     */
+    long streamMaxBytes() default 0;
+
+    /**
+     * stream最大消息数, -1不限制, 0为不配置
+     */
+    long streamMaxMessages() default 0;
+
+    /**
+     * stream消息最长保留时间, -1不限制, 0为不配置(新建stream取2天)
+     */
+    long streamMaxAge() default 0;
+
+    /**
+     * stream保留策略 Limits/Interest/WorkQueue, 空为不配置(新建stream取WorkQueue)
+     */
+    String streamRetention() default "";
+
+    /**
+     * stream达到限制时的丢弃策略 Old/New, 空为不配置
+     */
+    String streamDiscard() default "";
+
+    /**
+     * stream的Nats-Msg-Id去重窗口, 0为不配置(服务端默认2分钟)
+     */
+    long streamDuplicateWindow() default 0;
+
+    /**
+     * stream存储压缩 None/S2, 需要nats-server 2.10+, 空为不配置
+     */
+    String streamCompression() default "";
+
+    /**
+     * 没有Content-Type header的消息使用的codec(content type), 如application/x-jackson-smile, 空为默认JSON转换
+     */
+    String codec() default "";
+
     /**
      * 最大重试次数
      */
     int maxDeliver() default -1;
 
+    /**
+     * 处理失败后首次重投的延迟 单位ms, 之后每次乘以retryMultiplier, 0为立即重投
+     */
+    long retryDelay() default 0;
+
+    /**
+     * 重投延迟的增长倍数
+     */
+    double retryMultiplier() default 2.0;
+
+    /**
+     * 重投延迟的上限 单位ms
+     */
+    long retryMaxDelay() default 60000;
+
+    /**
+     * 各次重投的延迟 单位ms, 超出后重复最后一个, 不为空时代替retryDelay
+     */
+    long[] retryBackoff() default {};
+
+    /**
+     * 最后一次投递(maxDeliver)仍处理失败时发送到的subject, 附带失败信息header后ack原消息, 需要maxDeliver大于0且有stream包含该subject, 空为不发送
+     */
+    String deadLetterSubject() default "";
+
     /**
      * 是否自动ack
      */
@@ -44,6 +120,11 @@ public @interface NatsMessageListener {
      */
     int consumeThreadNumber() default 20;
 
+    /**
+     * 消费线程类型, VIRTUAL时每条消息一个虚拟线程(需要Java 21), 并发数不超过consumeThreadMax, 拉取线程也为虚拟线程
+     */
+    ExecutorType executor() default ExecutorType.PLATFORM;
+
     /**
      * Set ExecutorService params -- blockingQueueSize
      */
@@ -55,17 +136,17 @@ public @interface NatsMessageListener {
     long keepAliveTime() default 1000 * 60;
 
     /**
-     * 一次拉多少
+     * 单个pull请求最多拉多少, 同时在途的消息总数不超过consumeThreadMax
      */
     int pullBatchSize() default 10;
 
     /**
-     * 拉取下一个消息间隔
+     * 拉取出错后的重试间隔 单位ms
      */
     long pullInterval() default 1000;
 
     /**
-     * 拉取最大超时时间 单位ms
+     * pull请求的过期时间 单位ms
      */
     long maxWaitTime() default 3000;
 
@@ -74,4 +155,112 @@ public @interface NatsMessageListener {
      */
     long pullDelayTime() default 0;
 
+    /**
+     * 按subject的第几个token(从0开始)保证同key顺序消费, -1为不按subject排序
+     */
+    int orderKeySubjectToken() default -1;
+
+    /**
+     * 按header值保证同key顺序消费
+     */
+    String orderKeyHeader() default "";
+
+    /**
+     * 自定义{@link NatsMessageKeyExtractor}的bean名称, 按其返回的key保证顺序消费
+     */
+    String orderKeyExtractor() default "";
+
+    /**
+     * 顺序消费的通道数, 每个通道单线程, 0时取consumeThreadMax
+     */
+    int orderLanes() default 0;
+
+    /**
+     * NatsBatchListener每批最多消息数
+     */
+    int batchSize() default 100;
+
+    /**
+     * NatsBatchListener凑批最长等待时间 单位ms, 0为不等待
+     */
+    long batchLingerTime() default 100;
+
+    /**
+     * 合并ack, 已处理消息的ack按条数或时间批量发送, 失败的消息仍单独nak; 仅autoAck为true时生效.
+     * 顺序消费(设置了orderKey)时消费者以AckPolicy.All创建, 一次ack确认之前所有已处理的消息, 此时durable只能由一个实例消费且不能设置deliverGroup, 并需要maxDeliver大于0(失败的消息会挡住之后所有消息的ack直到最后一次投递);
+     * 已存在的durable消费者不能修改ack策略, 需要新的durable; WorkQueue保留策略的stream(默认)只允许AckPolicy.Explicit, 此时退回逐条发送合并的ack
+     */
+    boolean coalesceAcks() default false;
+
+    /**
+     * 合并ack时, 累计多少条已处理消息发送一次ack
+     */
+    int ackBatchSize() default 100;
+
+    /**
+     * 合并ack时, 最长多久发送一次ack 单位ms
+     */
+    long ackFlushInterval() default 100;
+
+    /**
+     * 停止时等待在途消息处理完的最长时间 单位ms, 超时后中断消费线程并nak剩余消息
+     */
+    long shutdownTimeout() default 10000;
+
+    /**
+     * 停止时nak剩余消息的重投延迟 单位ms, 0为立即重投
+     */
+    long shutdownNakDelay() default 0;
+
+    /**
+     * push模式服务端最多未ack的消息数, 达到后服务端暂停推送, 小于等于0时取consumeThreadMax + blockingQueueSize
+     */
+    long maxAckPending() default 0;
+
+    /**
+     * push模式是否开启服务端流控, 服务端不支持deliverGroup开启流控, 设置deliverGroup时不生效
+     */
+    boolean flowControl() default true;
+
+    /**
+     * push模式服务端空闲心跳间隔, 开启flowControl时小于等于0取5000, 设置deliverGroup时不生效
+     */
+    long idleHeartbeat() default 5000;
+
+    /**
+     * 服务端等待ack的时间, 超时后重投, 小于等于0时取服务端默认值(30s)
+     */
+    long ackWait() default 0;
+
+    /**
+     * push模式服务端推送速率上限, bit/s, 小于等于0不限制
+     */
+    long rateLimit() default 0;
+
+    /**
+     * push模式dispatcher最多缓存的消息数, 超过后客户端丢弃消息(slow consumer), 小于等于0时取maxAckPending + 1024
+     */
+    long pendingMessageLimit() default 0;
+
+    /**
+     * push模式dispatcher最多缓存的字节数, 小于等于0时取客户端默认值(64MB)
+     */
+    long pendingByteLimit() default 0;
+
+    /**
+     * pull模式自适应并发, 按处理耗时、在途消息数与服务端积压(numPending)在consumeThreadNumber与consumeThreadMax之间调整并发(AIMD),
+     * 单次拉取数随并发调整且不超过pullBatchSize; 仅对逐条处理的非顺序监听器生效
+     */
+    boolean autoscale() default false;
+
+    /**
+     * 自适应并发的调整间隔
+     */
+    long autoscaleInterval() default 5000;
+
+    /**
+     * 自适应并发的处理耗时目标, 平均处理耗时超过时并发减半, 小于等于0不限制
+     */
+    long autoscaleLatencyTarget() default 0;
+
 }
@@ -0,0 +1,35 @@
+package com.github.jarome.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Core NATS request handler, answers the requests of {@code NatsTemplate.request}
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface NatsRequestHandler {
+    String subject();
+
+    /**
+     * 队列组, 同组的多个实例只有一个处理同一请求, 空为不分组
+     */
+    String queue() default "";
+
+    /**
+     * 请求与回复的codec(content type), 如application/x-jackson-smile, 空为默认JSON转换
+     */
+    String codec() default "";
+
+    /**
+     * 处理线程数, 0为在nats dispatcher线程上直接处理(处理快且不阻塞时延迟最低)
+     */
+    int consumeThreadMax() default 0;
+
+    /**
+     * Set ExecutorService params -- blockingQueueSize
+     */
+    int blockingQueueSize() default 2000;
+}
@@ -0,0 +1,8 @@
+package com.github.jarome.annotation;
+
+/**
+ * A {@link NatsRequestHandler} must implement this interface, the returned value is the reply
+ */
+public interface NatsRequestListener<T, R> {
+    R onRequest(T request);
+}
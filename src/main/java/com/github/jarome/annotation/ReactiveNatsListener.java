@@ -0,0 +1,11 @@
+package com.github.jarome.annotation;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Implement this interface instead of {@link NatsListener} to handle messages without blocking,
+ * the message is acked when the returned Mono completes and naked when it fails. Needs reactor-core.
+ */
+public interface ReactiveNatsListener<T> {
+    Mono<Void> onMessage(T message);
+}
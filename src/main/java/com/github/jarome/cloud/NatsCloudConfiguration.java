@@ -0,0 +1,17 @@
+package com.github.jarome.cloud;
+
+import com.github.jarome.config.NatsListenerRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@ConditionalOnClass(name = "org.springframework.cloud.context.environment.EnvironmentChangeEvent")
+public class NatsCloudConfiguration {
+
+    @Bean
+    public NatsConsumersRefreshListener natsConsumersRefreshListener(NatsListenerRegistry natsListenerRegistry, Environment environment) {
+        return new NatsConsumersRefreshListener(natsListenerRegistry, environment);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.jarome.cloud;
+
+import com.github.jarome.config.NatsListenerRegistry;
+import com.github.jarome.config.PullConsumer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Applies changed {@code nats.consumers} to the running listeners on an environment refresh.
+ * Removed values keep the current setting.
+ */
+public class NatsConsumersRefreshListener implements ApplicationListener<EnvironmentChangeEvent> {
+    private static final String CONSUMERS_PREFIX = "nats.consumers";
+
+    private final NatsListenerRegistry natsListenerRegistry;
+    private final Environment environment;
+
+    public NatsConsumersRefreshListener(NatsListenerRegistry natsListenerRegistry, Environment environment) {
+        this.natsListenerRegistry = natsListenerRegistry;
+        this.environment = environment;
+    }
+
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().noneMatch(key -> key.startsWith(CONSUMERS_PREFIX))) {
+            return;
+        }
+        //bind from the environment itself, the rebinding of ConsumerProperties may not have happened yet
+        List<PullConsumer> consumers = Binder.get(environment).bind(CONSUMERS_PREFIX, Bindable.listOf(PullConsumer.class)).orElse(null);
+        natsListenerRegistry.refresh(consumers);
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.jarome.codec;
+
+import com.github.jarome.common.exception.NatsException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * gzip with one Deflater, Inflater and buffer per thread instead of a new stream per message, needs no extra dependency
+ */
+public class GzipCompressor implements PayloadCompressor {
+    public static final String GZIP = "gzip";
+
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int maxDecompressedSize;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+    private final ThreadLocal<CRC32> checksums = ThreadLocal.withInitial(CRC32::new);
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    public GzipCompressor() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level deflate level, 1 (fastest) to 9 (smallest)
+     */
+    public GzipCompressor(int level) {
+        this(level, DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param level               deflate level, 1 (fastest) to 9 (smallest)
+     * @param maxDecompressedSize max bytes of a decompressed payload
+     */
+    public GzipCompressor(int level, int maxDecompressedSize) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    @Override
+    public String getEncoding() {
+        return GZIP;
+    }
+
+    @Override
+    public byte[] compress(byte[] payload) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+        //deflate never grows the data by more than 5 bytes per 16K block
+        int bound = HEADER_SIZE + payload.length + (payload.length >> 12) + 64 + TRAILER_SIZE;
+        byte[] buffer = buffer(bound);
+        System.arraycopy(HEADER, 0, buffer, 0, HEADER_SIZE);
+        int size = HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (size == buffer.length - TRAILER_SIZE) {
+                buffer = grow(buffer);
+            }
+            size += deflater.deflate(buffer, size, buffer.length - TRAILER_SIZE - size);
+        }
+        CRC32 crc = checksums.get();
+        crc.reset();
+        crc.update(payload);
+        writeInt(buffer, size, (int) crc.getValue());
+        writeInt(buffer, size + 4, payload.length);
+        return Arrays.copyOf(buffer, size + TRAILER_SIZE);
+    }
+
+    @Override
+    public byte[] decompress(byte[] payload) {
+        if (payload.length < HEADER_SIZE + TRAILER_SIZE || payload[3] != 0) {
+            //header flags (name, comment, extra) of a foreign producer, rare enough for the stream
+            return decompressStream(payload);
+        }
+        int length = readInt(payload, payload.length - 4);
+        if (length < 0 || length > maxDecompressedSize) {
+            //the size is the producer's word, never allocate it unchecked
+            throw new NatsException("gzip payload of " + Integer.toUnsignedString(length) + " bytes exceeds the max decompressed size " + maxDecompressedSize);
+        }
+        byte[] result = new byte[length];
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(payload, HEADER_SIZE, payload.length - HEADER_SIZE - TRAILER_SIZE);
+        try {
+            int size = 0;
+            while (size < result.length && !inflater.finished()) {
+                int n = inflater.inflate(result, size, result.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+            if (size == result.length && !inflater.finished()) {
+                //the final block marker is still unread, always so for an empty payload
+                size += inflater.inflate(new byte[1]);
+            }
+            if (size != result.length || !inflater.finished()) {
+                throw new NatsException("gzip payload is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new NatsException("gzip decompress failed: " + e.getMessage(), e);
+        }
+        CRC32 crc = checksums.get();
+        crc.reset();
+        crc.update(result);
+        if ((int) crc.getValue() != readInt(payload, payload.length - TRAILER_SIZE)) {
+            throw new NatsException("gzip payload checksum mismatch");
+        }
+        return result;
+    }
+
+    private byte[] decompressStream(byte[] payload) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(maxDecompressedSize, payload.length * 4L));
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                if (out.size() + n > maxDecompressedSize) {
+                    throw new NatsException("gzip payload exceeds the max decompressed size " + maxDecompressedSize);
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new NatsException("gzip decompress failed: " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] buffer(int size) {
+        byte[] buffer = buffers.get();
+        if (buffer.length < size) {
+            buffer = new byte[size];
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    private byte[] grow(byte[] buffer) {
+        byte[] grown = Arrays.copyOf(buffer, buffer.length * 2);
+        buffers.set(grown);
+        return grown;
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+        buffer[offset + 2] = (byte) (value >>> 16);
+        buffer[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 | (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.jarome.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jarome.config.JacksonPayloadReader;
+import com.github.jarome.config.PayloadReader;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jackson based codec, the data format (JSON, Smile, CBOR) comes from the factory of the mapper
+ */
+public class JacksonCodec implements NatsCodec {
+    public static final String JSON = "application/json";
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String CBOR = "application/cbor";
+
+    private final String contentType;
+    private final ObjectMapper objectMapper;
+
+    public JacksonCodec(String contentType, ObjectMapper objectMapper) {
+        this.contentType = contentType;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * JSON on the given mapper, plus Smile and CBOR when their jackson dataformat module is on the classpath
+     *
+     * @param jsonMapper mapper of the JSON codec
+     * @return built-in jackson codecs
+     */
+    public static List<NatsCodec> defaultCodecs(ObjectMapper jsonMapper) {
+        List<NatsCodec> codecs = new ArrayList<>();
+        codecs.add(new JacksonCodec(JSON, jsonMapper));
+        addBinaryCodec(codecs, SMILE, "com.fasterxml.jackson.dataformat.smile.SmileFactory");
+        addBinaryCodec(codecs, CBOR, "com.fasterxml.jackson.dataformat.cbor.CBORFactory");
+        return codecs;
+    }
+
+    private static void addBinaryCodec(List<NatsCodec> codecs, String contentType, String factoryClassName) {
+        ClassLoader classLoader = JacksonCodec.class.getClassLoader();
+        if (!ClassUtils.isPresent(factoryClassName, classLoader)) {
+            return;
+        }
+        try {
+            JsonFactory factory = (JsonFactory) ClassUtils.forName(factoryClassName, classLoader).getDeclaredConstructor().newInstance();
+            ObjectMapper mapper = new ObjectMapper(factory);
+            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            codecs.add(new JacksonCodec(contentType, mapper));
+        } catch (ReflectiveOperationException ignored) {
+            //ignore this exception
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public byte[] encode(Object payload) throws Exception {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Override
+    public PayloadReader getReader(Type type) {
+        return new JacksonPayloadReader(objectMapper, type);
+    }
+}
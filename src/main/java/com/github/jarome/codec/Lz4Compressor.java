@@ -0,0 +1,80 @@
+package com.github.jarome.codec;
+
+import com.github.jarome.common.exception.NatsException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.util.Arrays;
+
+/**
+ * LZ4 block prefixed with the uncompressed length (4 bytes, little endian), needs org.lz4:lz4-java
+ */
+public class Lz4Compressor implements PayloadCompressor {
+    public static final String LZ4 = "lz4";
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+    private final int maxDecompressedSize;
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    public Lz4Compressor() {
+        this(DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param maxDecompressedSize max bytes of a decompressed payload
+     */
+    public Lz4Compressor(int maxDecompressedSize) {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    @Override
+    public String getEncoding() {
+        return LZ4;
+    }
+
+    @Override
+    public byte[] compress(byte[] payload) {
+        int bound = 4 + compressor.maxCompressedLength(payload.length);
+        byte[] buffer = buffers.get();
+        if (buffer.length < bound) {
+            buffer = new byte[bound];
+            buffers.set(buffer);
+        }
+        buffer[0] = (byte) payload.length;
+        buffer[1] = (byte) (payload.length >>> 8);
+        buffer[2] = (byte) (payload.length >>> 16);
+        buffer[3] = (byte) (payload.length >>> 24);
+        int size = compressor.compress(payload, 0, payload.length, buffer, 4, bound - 4);
+        return Arrays.copyOf(buffer, 4 + size);
+    }
+
+    @Override
+    public byte[] decompress(byte[] payload) {
+        if (payload.length < 4) {
+            throw new NatsException("lz4 payload is truncated");
+        }
+        int length = (payload[0] & 0xff) | (payload[1] & 0xff) << 8 | (payload[2] & 0xff) << 16 | (payload[3] & 0xff) << 24;
+        if (length < 0) {
+            throw new NatsException("lz4 payload length " + length + " is invalid");
+        }
+        if (length > maxDecompressedSize) {
+            throw new NatsException("lz4 payload of " + length + " bytes exceeds the max decompressed size " + maxDecompressedSize);
+        }
+        byte[] result = new byte[length];
+        try {
+            int size = decompressor.decompress(payload, 4, payload.length - 4, result, 0, length);
+            if (size != length) {
+                throw new NatsException("lz4 payload is truncated");
+            }
+        } catch (LZ4Exception e) {
+            throw new NatsException("lz4 decompress failed: " + e.getMessage(), e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.jarome.codec;
+
+import com.github.jarome.config.PayloadReader;
+
+import java.lang.reflect.Type;
+
+/**
+ * Serializes payloads for {@link com.github.jarome.config.NatsTemplate} and listeners.
+ * The content type is carried in the {@code Content-Type} header so consumers pick the matching codec.
+ * Register an implementation as a bean to add a codec
+ */
+public interface NatsCodec {
+
+    /**
+     * @return content type identifying the codec, e.g. application/json
+     */
+    String getContentType();
+
+    byte[] encode(Object payload) throws Exception;
+
+    /**
+     * Resolve the reader of a type, called once per listener and content type
+     *
+     * @param type target type
+     * @return reader of the payload bytes
+     */
+    PayloadReader getReader(Type type);
+}
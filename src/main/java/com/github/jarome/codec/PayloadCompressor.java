@@ -0,0 +1,28 @@
+package com.github.jarome.codec;
+
+/**
+ * Compresses payloads above the publisher threshold. The encoding is carried in the {@code Content-Encoding} header
+ * so consumers decompress before the codec reads the payload. Implementations are thread safe
+ */
+public interface PayloadCompressor {
+
+    /**
+     * Default max size of a decompressed payload: 64 times the 1MB max_payload of a default server. A payload declaring
+     * more is rejected before anything is allocated
+     */
+    int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * @return encoding identifying the compressor, e.g. gzip
+     */
+    String getEncoding();
+
+    byte[] compress(byte[] payload);
+
+    /**
+     * @param payload compressed payload
+     * @return the payload as published
+     * @throws com.github.jarome.common.exception.NatsException when it is corrupt or bigger than the max decompressed size
+     */
+    byte[] decompress(byte[] payload);
+}
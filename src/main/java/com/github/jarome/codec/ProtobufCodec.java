@@ -0,0 +1,60 @@
+package com.github.jarome.codec;
+
+import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.config.PayloadReader;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Type;
+
+/**
+ * Protobuf codec for generated message classes, used through reflection so protobuf-java stays optional
+ */
+public class ProtobufCodec implements NatsCodec {
+    public static final String PROTOBUF = "application/x-protobuf";
+
+    private final MethodHandle toByteArray;
+
+    public ProtobufCodec(Class<?> messageLiteClass) {
+        try {
+            this.toByteArray = MethodHandles.publicLookup().findVirtual(messageLiteClass, "toByteArray", MethodType.methodType(byte[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new NatsException("protobuf MessageLite.toByteArray not found", e);
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return PROTOBUF;
+    }
+
+    @Override
+    public byte[] encode(Object payload) throws Exception {
+        try {
+            return (byte[]) toByteArray.invoke(payload);
+        } catch (Throwable e) {
+            throw new NatsException("protobuf encode failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PayloadReader getReader(Type type) {
+        if (!(type instanceof Class)) {
+            throw new NatsException("protobuf codec cannot read " + type);
+        }
+        MethodHandle parseFrom;
+        try {
+            parseFrom = MethodHandles.publicLookup().findStatic((Class<?>) type, "parseFrom", MethodType.methodType((Class<?>) type, byte[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new NatsException(type + " is not a protobuf message", e);
+        }
+        return data -> {
+            try {
+                return parseFrom.invoke(data);
+            } catch (Throwable e) {
+                throw new NatsException("protobuf decode failed: " + e.getMessage(), e);
+            }
+        };
+    }
+}
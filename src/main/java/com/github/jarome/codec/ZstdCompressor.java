@@ -0,0 +1,78 @@
+package com.github.jarome.codec;
+
+import com.github.jarome.common.exception.NatsException;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+import java.util.Arrays;
+
+/**
+ * zstd frames with one native compression and decompression context per thread, needs com.github.luben:zstd-jni
+ */
+public class ZstdCompressor implements PayloadCompressor {
+    public static final String ZSTD = "zstd";
+
+    private final int maxDecompressedSize;
+    private final ThreadLocal<ZstdCompressCtx> compressContexts;
+    private final ThreadLocal<ZstdDecompressCtx> decompressContexts = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    public ZstdCompressor() {
+        this(Zstd.defaultCompressionLevel());
+    }
+
+    /**
+     * @param level zstd level, negative levels are faster, 3 is the default
+     */
+    public ZstdCompressor(int level) {
+        this(level, DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param level               zstd level, negative levels are faster, 3 is the default
+     * @param maxDecompressedSize max bytes of a decompressed payload
+     */
+    public ZstdCompressor(int level, int maxDecompressedSize) {
+        this.compressContexts = ThreadLocal.withInitial(() -> new ZstdCompressCtx().setLevel(level).setContentSize(true));
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    @Override
+    public String getEncoding() {
+        return ZSTD;
+    }
+
+    @Override
+    public byte[] compress(byte[] payload) {
+        int bound = (int) Zstd.compressBound(payload.length);
+        byte[] buffer = buffers.get();
+        if (buffer.length < bound) {
+            buffer = new byte[bound];
+            buffers.set(buffer);
+        }
+        try {
+            int size = compressContexts.get().compressByteArray(buffer, 0, bound, payload, 0, payload.length);
+            return Arrays.copyOf(buffer, size);
+        } catch (ZstdException e) {
+            throw new NatsException("zstd compress failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] payload) {
+        long length = Zstd.getFrameContentSize(payload);
+        if (length < 0) {
+            throw new NatsException("zstd payload without valid content size");
+        }
+        if (length > maxDecompressedSize) {
+            throw new NatsException("zstd payload of " + length + " bytes exceeds the max decompressed size " + maxDecompressedSize);
+        }
+        try {
+            return decompressContexts.get().decompress(payload, (int) length);
+        } catch (ZstdException e) {
+            throw new NatsException("zstd decompress failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.jarome.common;
+
+/**
+ * NATS message headers used by the starter
+ */
+public final class NatsHeaders {
+    /**
+     * Content type of the payload, selects the {@link com.github.jarome.codec.NatsCodec} on the consumer side
+     */
+    public static final String CONTENT_TYPE = "Content-Type";
+
+    /**
+     * Compression of the payload, selects the {@link com.github.jarome.codec.PayloadCompressor} that restores it before the codec reads it
+     */
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+
+    /**
+     * Error of a request handler, the requester fails with it. Same headers as the NATS micro services
+     */
+    public static final String SERVICE_ERROR = "Nats-Service-Error";
+    public static final String SERVICE_ERROR_CODE = "Nats-Service-Error-Code";
+
+    /**
+     * Failure headers of a message sent to the dead letter subject of a listener
+     */
+    public static final String DLQ_ORIGINAL_SUBJECT = "Dlq-Original-Subject";
+    public static final String DLQ_ORIGINAL_STREAM = "Dlq-Original-Stream";
+    public static final String DLQ_ORIGINAL_SEQUENCE = "Dlq-Original-Sequence";
+    public static final String DLQ_DELIVERY_COUNT = "Dlq-Delivery-Count";
+    public static final String DLQ_CONSUMER = "Dlq-Consumer";
+    public static final String DLQ_EXCEPTION = "Dlq-Exception";
+    public static final String DLQ_EXCEPTION_MESSAGE = "Dlq-Exception-Message";
+
+    private NatsHeaders() {
+    }
+}
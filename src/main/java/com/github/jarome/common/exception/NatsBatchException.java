@@ -0,0 +1,28 @@
+package com.github.jarome.common.exception;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Thrown by a batch listener when only some messages of the batch failed
+ */
+public class NatsBatchException extends NatsException {
+    /**
+     * Indexes in the batch of the failed messages
+     */
+    private final Collection<Integer> failedIndexes;
+
+    public NatsBatchException(String msg, Collection<Integer> failedIndexes) {
+        super(msg);
+        this.failedIndexes = failedIndexes == null ? Collections.emptyList() : failedIndexes;
+    }
+
+    public NatsBatchException(String msg, Collection<Integer> failedIndexes, Throwable cause) {
+        super(msg, cause);
+        this.failedIndexes = failedIndexes == null ? Collections.emptyList() : failedIndexes;
+    }
+
+    public Collection<Integer> getFailedIndexes() {
+        return failedIndexes;
+    }
+}
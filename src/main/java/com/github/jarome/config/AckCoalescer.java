@@ -0,0 +1,190 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Coalesces the acks of a listener and sends them on a size or time threshold. Failed messages are naked one by one.
+ * <p>
+ * An {@link io.nats.client.api.AckPolicy#Explicit} consumer gets every buffered ack on a flush, written back to back.
+ * A cumulative coalescer serves an {@link io.nats.client.api.AckPolicy#All} consumer that this instance alone consumes:
+ * one ack of the highest stream sequence below every message still in progress covers all handled messages before it.
+ * Messages are tracked from delivery (see {@link #delivered(Message)}), so a slow or failed message holds the ack back
+ * instead of being acked by a later one, until its redelivery succeeds or it had its last delivery attempt. The consumer
+ * therefore needs a max deliver, and only the highest handled message between two messages in progress is kept.
+ */
+public class AckCoalescer implements MessageAcknowledger {
+    private final int batchSize;
+    private final long maxDeliver;
+    private final boolean cumulative;
+    /**
+     * Stream sequences delivered and not handled yet, or naked and waiting for redelivery. Cumulative only
+     */
+    private final TreeSet<Long> inProgress = new TreeSet<>();
+    /**
+     * Highest handled message between two messages in progress, by stream sequence. Cumulative only
+     */
+    private final TreeMap<Long, Pending> handled = new TreeMap<>();
+    /**
+     * Handled messages not acked yet. Explicit only
+     */
+    private final List<Message> acks = new ArrayList<>();
+    private int pendingAcks;
+
+    /**
+     * @param batchSize  handled messages that trigger a flush
+     * @param maxDeliver max delivery attempts of the consumer, less than 1 for unlimited
+     * @param cumulative true for an AckPolicy.All consumer, false to send every ack of an AckPolicy.Explicit consumer
+     */
+    public AckCoalescer(int batchSize, long maxDeliver, boolean cumulative) {
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDeliver = maxDeliver;
+        this.cumulative = cumulative;
+    }
+
+    public boolean isCumulative() {
+        return cumulative;
+    }
+
+    /**
+     * Register a message before it is handed to the workers, in delivery order
+     *
+     * @param msg delivered message
+     */
+    public void delivered(Message msg) {
+        if (cumulative) {
+            synchronized (this) {
+                inProgress.add(msg.metaData().streamSequence());
+            }
+        }
+    }
+
+    @Override
+    public void ack(Message msg) {
+        boolean flush;
+        synchronized (this) {
+            pendingAcks++;
+            if (cumulative) {
+                long seq = msg.metaData().streamSequence();
+                inProgress.remove(seq);
+                flush = merge(seq, msg) >= batchSize;
+            } else {
+                acks.add(msg);
+                flush = acks.size() >= batchSize;
+            }
+        }
+        if (flush) {
+            flush();
+        }
+    }
+
+    @Override
+    public void nak(Message msg) {
+        msg.nak();
+        naked(msg);
+    }
+
+    @Override
+    public void nakWithDelay(Message msg, Duration delay) {
+        msg.nakWithDelay(delay);
+        naked(msg);
+    }
+
+    private void naked(Message msg) {
+        if (cumulative && maxDeliver > 0 && msg.metaData().deliveredCount() >= maxDeliver) {
+            //never comes back, stop holding the ack
+            boolean flush;
+            synchronized (this) {
+                long seq = msg.metaData().streamSequence();
+                flush = inProgress.remove(seq) && merge(seq, null) >= batchSize;
+            }
+            if (flush) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Keep only the highest handled message between the messages in progress around a sequence no longer in progress
+     *
+     * @param msg handled message of the sequence, null if it was not handled
+     * @return handled messages an ack can cover now, 0 while a message in progress is below them
+     */
+    private int merge(long seq, Message msg) {
+        Long lower = inProgress.lower(seq);
+        Long higher = inProgress.higher(seq);
+        Map<Long, Pending> between = lower == null
+                ? (higher == null ? handled : handled.headMap(higher, false))
+                : (higher == null ? handled.tailMap(lower, false) : handled.subMap(lower, false, higher, false));
+        Map.Entry<Long, Pending> last = null;
+        int count = msg == null ? 0 : 1;
+        for (Map.Entry<Long, Pending> entry : between.entrySet()) {
+            count += entry.getValue().count;
+            last = entry;
+        }
+        between.clear();
+        if (msg != null && (last == null || last.getKey() < seq)) {
+            handled.put(seq, new Pending(msg, count));
+        } else if (last != null) {
+            handled.put(last.getKey(), new Pending(last.getValue().msg, count));
+        }
+        return lower == null ? count : 0;
+    }
+
+    /**
+     * Send the buffered acks: all of them for an explicit consumer, else the highest handled message below
+     * everything still in progress
+     */
+    public void flush() {
+        if (!cumulative) {
+            List<Message> sending;
+            synchronized (this) {
+                if (acks.isEmpty()) {
+                    return;
+                }
+                sending = new ArrayList<>(acks);
+                acks.clear();
+                pendingAcks = 0;
+            }
+            sending.forEach(Message::ack);
+            return;
+        }
+        Pending last;
+        synchronized (this) {
+            Map.Entry<Long, Pending> entry = handled.firstEntry();
+            if (entry == null || !inProgress.isEmpty() && entry.getKey() >= inProgress.first()) {
+                return;
+            }
+            handled.remove(entry.getKey());
+            last = entry.getValue();
+            pendingAcks -= last.count;
+        }
+        last.msg.ack();
+    }
+
+    /**
+     * @return handled messages waiting for a coalesced ack
+     */
+    public synchronized int getPendingAcks() {
+        return pendingAcks;
+    }
+
+    /**
+     * Handled message whose ack covers the other handled messages since the previous message in progress
+     */
+    private static class Pending {
+        private final Message msg;
+        private final int count;
+
+        private Pending(Message msg, int count) {
+            this.msg = msg;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects messages into batches of at most {@code batchSize} and runs the batch handler on the executor
+ * once the batch is full or the first message of the batch has waited {@code lingerTime} ms
+ */
+public class BatchMessageDispatcher implements MessageDispatcher {
+    private final Executor executor;
+    private final ScheduledExecutorService lingerScheduler;
+    private final int batchSize;
+    private final long lingerTime;
+    private final Consumer<List<Message>> batchHandler;
+    private final Object lock = new Object();
+    private List<Message> messages;
+    private List<Runnable> callbacks;
+    /**
+     * Bumped on every flush so a linger timer never flushes a younger batch
+     */
+    private long generation;
+
+    public BatchMessageDispatcher(Executor executor, ScheduledExecutorService lingerScheduler, int batchSize, long lingerTime, Consumer<List<Message>> batchHandler) {
+        this.executor = executor;
+        this.lingerScheduler = lingerScheduler;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerTime = Math.max(0L, lingerTime);
+        this.batchHandler = batchHandler;
+        newBatch();
+    }
+
+    @Override
+    public void dispatch(Message msg, Runnable done) {
+        List<Message> fullMessages = null;
+        List<Runnable> fullCallbacks = null;
+        synchronized (lock) {
+            messages.add(msg);
+            callbacks.add(done);
+            if (messages.size() >= batchSize || lingerTime == 0L) {
+                fullMessages = messages;
+                fullCallbacks = callbacks;
+                newBatch();
+            } else if (messages.size() == 1) {
+                long scheduledGeneration = generation;
+                lingerScheduler.schedule(() -> flush(scheduledGeneration), lingerTime, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullMessages != null) {
+            submit(fullMessages, fullCallbacks);
+        }
+    }
+
+    private void flush(long scheduledGeneration) {
+        List<Message> lingerMessages;
+        List<Runnable> lingerCallbacks;
+        synchronized (lock) {
+            if (scheduledGeneration != generation || messages.isEmpty()) {
+                return;
+            }
+            lingerMessages = messages;
+            lingerCallbacks = callbacks;
+            newBatch();
+        }
+        submit(lingerMessages, lingerCallbacks);
+    }
+
+    private void submit(List<Message> batch, List<Runnable> batchCallbacks) {
+        executor.execute(() -> {
+            try {
+                batchHandler.accept(batch);
+            } finally {
+                batchCallbacks.forEach(Runnable::run);
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    private void newBatch() {
+        messages = new ArrayList<>(batchSize);
+        callbacks = new ArrayList<>(batchSize);
+        generation++;
+    }
+}
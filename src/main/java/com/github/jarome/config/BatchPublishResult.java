@@ -0,0 +1,42 @@
+package com.github.jarome.config;
+
+import io.nats.client.api.PublishAck;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of {@link NatsTemplate#publishAll}, indexes follow the order of the published bodies
+ */
+public class BatchPublishResult {
+    /**
+     * Ack of every message, null where the publish failed
+     */
+    private final List<PublishAck> acks;
+    /**
+     * key: index of the failed message
+     */
+    private final Map<Integer, Throwable> failures;
+
+    public BatchPublishResult(List<PublishAck> acks, Map<Integer, Throwable> failures) {
+        this.acks = Collections.unmodifiableList(acks);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public List<PublishAck> getAcks() {
+        return acks;
+    }
+
+    public Map<Integer, Throwable> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    public int size() {
+        return acks.size();
+    }
+}
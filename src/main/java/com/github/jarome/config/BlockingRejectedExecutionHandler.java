@@ -0,0 +1,25 @@
+package com.github.jarome.config;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Blocks the submitting thread until the work queue has room again, so a burst slows intake
+ * instead of throwing {@link RejectedExecutionException} into the pull loop or the push dispatcher.
+ */
+public class BlockingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        try {
+            executor.getQueue().put(r);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for queue space", e);
+        }
+    }
+}
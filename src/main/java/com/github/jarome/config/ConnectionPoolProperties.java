@@ -0,0 +1,36 @@
+package com.github.jarome.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "nats.pool")
+public class ConnectionPoolProperties {
+
+    /**
+     * Connections including the natsConnection bean, the others are opened with its options
+     */
+    private int size = 1;
+
+    /**
+     * Connection index by subject (wildcards allowed), first match wins; other subjects are spread by hash
+     */
+    private Map<String, Integer> assignments = new LinkedHashMap<>();
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public Map<String, Integer> getAssignments() {
+        return assignments;
+    }
+
+    public void setAssignments(Map<String, Integer> assignments) {
+        this.assignments = assignments;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.jarome.config;
+
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * AIMD controller of a pull listener: concurrency grows by a fixed step while the consumer has messages pending
+ * on the server, is halved when the mean handler time exceeds the latency target and shrinks by a quarter while
+ * fewer than half of the workers are busy and nothing is pending. The pull batch size follows the concurrency
+ * up to the configured {@code pullBatchSize}.
+ */
+public class ConsumerAutoscaler {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerAutoscaler.class);
+
+    public enum Decision {
+        INCREASE, DECREASE, HOLD
+    }
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private volatile int minConcurrency;
+    private volatile int maxConcurrency;
+    private volatile int step;
+    private final long latencyTargetNanos;
+    private final ConsumerMetrics metrics;
+    private final LongAdder handledCount = new LongAdder();
+    private final LongAdder handledNanos = new LongAdder();
+    private PullListenerContainer container;
+    private volatile int concurrency;
+    private volatile long pending = -1L;
+    private volatile long meanLatencyNanos;
+
+    /**
+     * @param name           listener bean name
+     * @param executor       platform consumer pool whose core size follows the concurrency, null for virtual threads
+     * @param minConcurrency lower bound, consumeThreadNumber
+     * @param maxConcurrency upper bound, consumeThreadMax
+     * @param latencyTarget  mean handler time above which the concurrency is halved, ms, 0 for none
+     * @param metrics        decisions and current settings
+     */
+    public ConsumerAutoscaler(String name, ThreadPoolExecutor executor, int minConcurrency, int maxConcurrency, long latencyTarget, ConsumerMetrics metrics) {
+        this.name = name;
+        this.executor = executor;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.minConcurrency = Math.max(1, Math.min(minConcurrency, this.maxConcurrency));
+        this.step = Math.max(1, (this.maxConcurrency - this.minConcurrency) / 10);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, latencyTarget));
+        this.metrics = metrics;
+        this.concurrency = this.minConcurrency;
+    }
+
+    /**
+     * Time the handler of every message
+     */
+    public Consumer<Message> timed(Consumer<Message> messageHandler) {
+        return msg -> {
+            long start = System.nanoTime();
+            try {
+                messageHandler.accept(msg);
+            } finally {
+                handledNanos.add(System.nanoTime() - start);
+                handledCount.increment();
+            }
+        };
+    }
+
+    /**
+     * @param container container whose pull loop is resized, its capacity starts at the lower bound
+     */
+    public void attach(PullListenerContainer container) {
+        this.container = container;
+        metrics.monitorAutoscaler(this);
+    }
+
+    /**
+     * One control step, run every autoscaleInterval ms
+     */
+    public synchronized void adjust() {
+        if (container == null || !container.isRunning()) {
+            return;
+        }
+        long count = handledCount.sumThenReset();
+        long nanos = handledNanos.sumThenReset();
+        meanLatencyNanos = count == 0 ? 0L : nanos / count;
+        try {
+            pending = container.getSubscription().getConsumerInfo().getNumPending();
+        } catch (Exception e) {
+            log.warn("autoscaler of {} cannot read consumer info: {}", name, e.getMessage());
+            pending = -1L;
+        }
+        int current = concurrency;
+        int target = current;
+        if (latencyTargetNanos > 0L && count > 0 && meanLatencyNanos > latencyTargetNanos) {
+            //the handlers slow down: back off before the downstream saturates
+            target = current / 2;
+        } else if (pending > 0L) {
+            target = current + step;
+        } else if (pending == 0L && container.getInFlightCount() < current / 2) {
+            target = current - Math.max(1, current / 4);
+        }
+        target = Math.max(minConcurrency, Math.min(maxConcurrency, target));
+        Decision decision = target > current ? Decision.INCREASE : target < current ? Decision.DECREASE : Decision.HOLD;
+        if (decision != Decision.HOLD) {
+            apply(target);
+            log.debug("autoscaler of {} {} concurrency {} -> {}, pending {}, mean latency {}us", name, decision, current, target, pending, TimeUnit.NANOSECONDS.toMicros(meanLatencyNanos));
+        }
+        metrics.autoscaled(decision);
+    }
+
+    /**
+     * Move the bounds, the concurrency is clamped into them at once
+     *
+     * @param minConcurrency lower bound
+     * @param maxConcurrency upper bound
+     */
+    public synchronized void setBounds(int minConcurrency, int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.minConcurrency = Math.max(1, Math.min(minConcurrency, this.maxConcurrency));
+        this.step = Math.max(1, (this.maxConcurrency - this.minConcurrency) / 10);
+        int target = Math.max(this.minConcurrency, Math.min(this.maxConcurrency, concurrency));
+        if (target != concurrency && container != null) {
+            apply(target);
+        }
+    }
+
+    private void apply(int target) {
+        if (executor != null) {
+            executor.setCorePoolSize(target);
+        }
+        container.getPullMessageService().setCapacity(target);
+        concurrency = target;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getPullBatchSize() {
+        return container == null ? 0 : container.getPullMessageService().getPullBatchSize();
+    }
+
+    /**
+     * @return messages pending on the server at the last step, -1 when unknown
+     */
+    public long getPending() {
+        return pending;
+    }
+
+    /**
+     * @return mean handler time of the last interval, ns
+     */
+    public long getMeanLatencyNanos() {
+        return meanLatencyNanos;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+}
@@ -15,6 +15,22 @@ public class ConsumerProperties {
      */
     private List<PullConsumer> consumers;
 
+    /**
+     * Stream settings by stream name, they take precedence over the stream attributes of the listeners
+     */
+    private List<StreamProperties> streams;
+
+    /**
+     * Listeners registered at the same time on startup, every registration makes stream and consumer management requests
+     */
+    private int startupParallelism = 8;
+
+    /**
+     * Register the listeners in the background instead of blocking the context refresh,
+     * a failed registration is logged and reported by the natsConsumers health indicator
+     */
+    private boolean lazyStartup = false;
+
     public List<PullConsumer> getConsumers() {
         return consumers;
     }
@@ -22,4 +38,28 @@ public class ConsumerProperties {
     public void setConsumers(List<PullConsumer> consumers) {
         this.consumers = consumers;
     }
+
+    public List<StreamProperties> getStreams() {
+        return streams;
+    }
+
+    public void setStreams(List<StreamProperties> streams) {
+        this.streams = streams;
+    }
+
+    public int getStartupParallelism() {
+        return startupParallelism;
+    }
+
+    public void setStartupParallelism(int startupParallelism) {
+        this.startupParallelism = startupParallelism;
+    }
+
+    public boolean isLazyStartup() {
+        return lazyStartup;
+    }
+
+    public void setLazyStartup(boolean lazyStartup) {
+        this.lazyStartup = lazyStartup;
+    }
 }
\ No newline at end of file
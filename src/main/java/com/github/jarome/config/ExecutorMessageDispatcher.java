@@ -0,0 +1,38 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Runs the handler of every message on the executor
+ */
+public class ExecutorMessageDispatcher implements MessageDispatcher {
+    private final Executor executor;
+    private final Consumer<Message> messageHandler;
+
+    public ExecutorMessageDispatcher(Executor executor, Consumer<Message> messageHandler) {
+        this.executor = executor;
+        this.messageHandler = messageHandler;
+    }
+
+    @Override
+    public void dispatch(Message msg, Runnable done) {
+        executor.execute(() -> {
+            try {
+                messageHandler.accept(msg);
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.NatsMessageKeyExtractor;
+import io.nats.client.Message;
+
+/**
+ * Uses a header value as the ordering key
+ */
+public class HeaderKeyExtractor implements NatsMessageKeyExtractor {
+    private final String header;
+
+    public HeaderKeyExtractor(String header) {
+        this.header = header;
+    }
+
+    @Override
+    public String extractKey(Message message) {
+        return message.hasHeaders() ? message.getHeaders().getFirst(header) : null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.jarome.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.lang.reflect.Type;
+
+/**
+ * Reads the payload bytes straight into the target type with an {@link ObjectReader} bound once to that type
+ */
+public class JacksonPayloadReader implements PayloadReader {
+    private final ObjectReader objectReader;
+
+    public JacksonPayloadReader(ObjectMapper objectMapper, Type type) {
+        this.objectReader = objectMapper.readerFor(objectMapper.constructType(type));
+    }
+
+    @Override
+    public Object read(byte[] data) throws Exception {
+        return objectReader.readValue(data);
+    }
+}
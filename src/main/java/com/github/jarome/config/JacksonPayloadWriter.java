@@ -0,0 +1,20 @@
+package com.github.jarome.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes a payload straight to UTF-8 JSON bytes with an {@link ObjectWriter} bound once to its class
+ */
+public class JacksonPayloadWriter implements PayloadWriter {
+    private final ObjectWriter objectWriter;
+
+    public JacksonPayloadWriter(ObjectMapper objectMapper, Class<?> payloadType) {
+        this.objectWriter = objectMapper.writerFor(payloadType);
+    }
+
+    @Override
+    public byte[] write(Object payload) throws Exception {
+        return objectWriter.writeValueAsBytes(payload);
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.ExecutorType;
+import com.github.jarome.annotation.NatsMessageListener;
+
+import java.util.List;
+
+/**
+ * Settings of one listener: the {@link NatsMessageListener} attributes overridden by the {@code nats.consumers}
+ * entry of its filter subject
+ */
+class ListenerSettings {
+    boolean autoAck;
+    int threadMax;
+    int threadNumber;
+    int queueSize;
+    long pullInterval;
+    long maxWaitTime;
+    long keepAliveTime;
+    int pullBatchSize;
+    long pullDelayTime;
+    int orderLanes;
+    int batchSize;
+    long batchLingerTime;
+    long maxAckPending;
+    boolean flowControl;
+    long idleHeartbeat;
+    long ackWait;
+    long rateLimit;
+    long pendingMessageLimit;
+    long pendingByteLimit;
+    ExecutorType executorType;
+    boolean coalesceAcks;
+    int ackBatchSize;
+    long ackFlushInterval;
+    long shutdownTimeout;
+    long shutdownNakDelay;
+    boolean autoscale;
+    long autoscaleInterval;
+    long autoscaleLatencyTarget;
+    long retryDelay;
+    double retryMultiplier;
+    long retryMaxDelay;
+    long[] retryBackoff;
+    String deadLetterSubject;
+    boolean paused;
+
+    /**
+     * @param annotation listener annotation
+     * @param consumers  nats.consumers, may be null
+     * @return settings of the listener
+     */
+    static ListenerSettings of(NatsMessageListener annotation, List<PullConsumer> consumers) {
+        ListenerSettings settings = new ListenerSettings();
+        settings.autoAck = annotation.autoAck();
+        settings.threadMax = annotation.consumeThreadMax();
+        settings.threadNumber = annotation.consumeThreadNumber();
+        settings.queueSize = annotation.blockingQueueSize();
+        settings.pullInterval = annotation.pullInterval();
+        settings.maxWaitTime = annotation.maxWaitTime();
+        settings.keepAliveTime = annotation.keepAliveTime();
+        settings.pullBatchSize = annotation.pullBatchSize();
+        settings.pullDelayTime = annotation.pullDelayTime();
+        settings.orderLanes = annotation.orderLanes();
+        settings.batchSize = annotation.batchSize();
+        settings.batchLingerTime = annotation.batchLingerTime();
+        settings.maxAckPending = annotation.maxAckPending();
+        settings.flowControl = annotation.flowControl();
+        settings.idleHeartbeat = annotation.idleHeartbeat();
+        settings.ackWait = annotation.ackWait();
+        settings.rateLimit = annotation.rateLimit();
+        settings.pendingMessageLimit = annotation.pendingMessageLimit();
+        settings.pendingByteLimit = annotation.pendingByteLimit();
+        settings.executorType = annotation.executor();
+        settings.coalesceAcks = annotation.coalesceAcks();
+        settings.ackBatchSize = annotation.ackBatchSize();
+        settings.ackFlushInterval = annotation.ackFlushInterval();
+        settings.shutdownTimeout = annotation.shutdownTimeout();
+        settings.shutdownNakDelay = annotation.shutdownNakDelay();
+        settings.autoscale = annotation.autoscale();
+        settings.autoscaleInterval = annotation.autoscaleInterval();
+        settings.autoscaleLatencyTarget = annotation.autoscaleLatencyTarget();
+        settings.retryDelay = annotation.retryDelay();
+        settings.retryMultiplier = annotation.retryMultiplier();
+        settings.retryMaxDelay = annotation.retryMaxDelay();
+        settings.retryBackoff = annotation.retryBackoff();
+        settings.deadLetterSubject = annotation.deadLetterSubject();
+        settings.paused = false;
+        if (consumers != null) {
+            for (PullConsumer pullConsumer : consumers) {
+                if (pullConsumer.getSubject().equals(annotation.filterSubject())) {
+                    settings.override(pullConsumer);
+                }
+            }
+        }
+        //coalesced acks are only known for messages the starter acks itself
+        settings.coalesceAcks = settings.coalesceAcks && settings.autoAck;
+        return settings;
+    }
+
+    /**
+     * Take the fields of {@code pullConsumer} that are configured
+     */
+    private void override(PullConsumer pullConsumer) {
+        autoAck = pullConsumer.getAutoAck() == null ? autoAck : pullConsumer.getAutoAck();
+        threadMax = pullConsumer.getConsumeThreadMax() == null ? threadMax : pullConsumer.getConsumeThreadMax();
+        threadNumber = pullConsumer.getConsumeThreadNumber() == null ? threadNumber : pullConsumer.getConsumeThreadNumber();
+        queueSize = pullConsumer.getBlockingQueueSize() == null ? queueSize : pullConsumer.getBlockingQueueSize();
+        pullInterval = pullConsumer.getPullInterval() == null ? pullInterval : Math.max(1L, pullConsumer.getPullInterval());
+        maxWaitTime = pullConsumer.getMaxWaitTime() == null ? maxWaitTime : Math.max(1L, pullConsumer.getMaxWaitTime());
+        keepAliveTime = pullConsumer.getKeepAliveTime() == null ? keepAliveTime : pullConsumer.getKeepAliveTime();
+        pullBatchSize = pullConsumer.getPullBatchSize() == null ? pullBatchSize : Math.max(1, pullConsumer.getPullBatchSize());
+        pullDelayTime = pullConsumer.getPullDelayTime() == null ? pullDelayTime : Math.max(0L, pullConsumer.getPullDelayTime());
+        orderLanes = pullConsumer.getOrderLanes() == null ? orderLanes : pullConsumer.getOrderLanes();
+        batchSize = pullConsumer.getBatchSize() == null ? batchSize : Math.max(1, pullConsumer.getBatchSize());
+        batchLingerTime = pullConsumer.getBatchLingerTime() == null ? batchLingerTime : Math.max(0L, pullConsumer.getBatchLingerTime());
+        maxAckPending = pullConsumer.getMaxAckPending() == null ? maxAckPending : pullConsumer.getMaxAckPending();
+        flowControl = pullConsumer.getFlowControl() == null ? flowControl : pullConsumer.getFlowControl();
+        idleHeartbeat = pullConsumer.getIdleHeartbeat() == null ? idleHeartbeat : pullConsumer.getIdleHeartbeat();
+        ackWait = pullConsumer.getAckWait() == null ? ackWait : pullConsumer.getAckWait();
+        rateLimit = pullConsumer.getRateLimit() == null ? rateLimit : pullConsumer.getRateLimit();
+        pendingMessageLimit = pullConsumer.getPendingMessageLimit() == null ? pendingMessageLimit : pullConsumer.getPendingMessageLimit();
+        pendingByteLimit = pullConsumer.getPendingByteLimit() == null ? pendingByteLimit : pullConsumer.getPendingByteLimit();
+        executorType = pullConsumer.getExecutor() == null ? executorType : pullConsumer.getExecutor();
+        coalesceAcks = pullConsumer.getCoalesceAcks() == null ? coalesceAcks : pullConsumer.getCoalesceAcks();
+        ackBatchSize = pullConsumer.getAckBatchSize() == null ? ackBatchSize : Math.max(1, pullConsumer.getAckBatchSize());
+        ackFlushInterval = pullConsumer.getAckFlushInterval() == null ? ackFlushInterval : Math.max(1L, pullConsumer.getAckFlushInterval());
+        shutdownTimeout = pullConsumer.getShutdownTimeout() == null ? shutdownTimeout : Math.max(0L, pullConsumer.getShutdownTimeout());
+        shutdownNakDelay = pullConsumer.getShutdownNakDelay() == null ? shutdownNakDelay : Math.max(0L, pullConsumer.getShutdownNakDelay());
+        autoscale = pullConsumer.getAutoscale() == null ? autoscale : pullConsumer.getAutoscale();
+        autoscaleInterval = pullConsumer.getAutoscaleInterval() == null ? autoscaleInterval : Math.max(1L, pullConsumer.getAutoscaleInterval());
+        autoscaleLatencyTarget = pullConsumer.getAutoscaleLatencyTarget() == null ? autoscaleLatencyTarget : pullConsumer.getAutoscaleLatencyTarget();
+        retryDelay = pullConsumer.getRetryDelay() == null ? retryDelay : Math.max(0L, pullConsumer.getRetryDelay());
+        retryMultiplier = pullConsumer.getRetryMultiplier() == null ? retryMultiplier : pullConsumer.getRetryMultiplier();
+        retryMaxDelay = pullConsumer.getRetryMaxDelay() == null ? retryMaxDelay : pullConsumer.getRetryMaxDelay();
+        retryBackoff = pullConsumer.getRetryBackoff() == null ? retryBackoff : pullConsumer.getRetryBackoff().stream().mapToLong(Long::longValue).toArray();
+        deadLetterSubject = pullConsumer.getDeadLetterSubject() == null ? deadLetterSubject : pullConsumer.getDeadLetterSubject();
+        paused = pullConsumer.getPaused() == null ? paused : pullConsumer.getPaused();
+    }
+
+    /**
+     * @return max unacked messages the server keeps out, consumeThreadMax + blockingQueueSize when not configured
+     */
+    long effectiveMaxAckPending() {
+        return maxAckPending > 0 ? maxAckPending : (long) threadMax + queueSize;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+
+import java.time.Duration;
+
+/**
+ * Acks and naks the messages of a consumer once their handler finished
+ */
+public interface MessageAcknowledger {
+    /**
+     * Acks and naks go straight to the server, one per message
+     */
+    MessageAcknowledger EXPLICIT = new MessageAcknowledger() {
+        @Override
+        public void ack(Message msg) {
+            msg.ack();
+        }
+
+        @Override
+        public void nak(Message msg) {
+            msg.nak();
+        }
+
+        @Override
+        public void nakWithDelay(Message msg, Duration delay) {
+            msg.nakWithDelay(delay);
+        }
+    };
+
+    void ack(Message msg);
+
+    void nak(Message msg);
+
+    /**
+     * Nak a message whose handler failed
+     *
+     * @param cause failure of the handler
+     */
+    default void nak(Message msg, Throwable cause) {
+        nak(msg);
+    }
+
+    /**
+     * Nak a message that the server redelivers after {@code delay}
+     */
+    void nakWithDelay(Message msg, Duration delay);
+}
@@ -0,0 +1,23 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+
+/**
+ * Hands received messages over to the consumer workers
+ */
+public interface MessageDispatcher {
+
+    /**
+     * Dispatch a message
+     *
+     * @param msg  received message
+     * @param done run exactly once when the message has been handled
+     */
+    void dispatch(Message msg, Runnable done);
+
+    /**
+     * Stop the workers, interrupting the handlers still running
+     */
+    default void shutdown() {
+    }
+}
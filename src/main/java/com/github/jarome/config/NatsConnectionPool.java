@@ -0,0 +1,141 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+import io.nats.client.Connection;
+import io.nats.client.JetStream;
+import io.nats.client.Nats;
+import io.nats.client.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connections shared by the publishers and listeners, so they are not capped by the socket and reader thread of one.
+ * A subject keeps its connection, picked by {@code nats.pool.assignments} or by hash, so its messages stay in order.
+ * Publishing moves to the next connected connection while the assigned one is not connected;
+ * subscriptions stay on their connection, which restores them when it reconnects.
+ */
+@Component
+@DependsOn("natsConnection")
+public class NatsConnectionPool implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(NatsConnectionPool.class);
+
+    private final Connection[] connections;
+    private final JetStream[] jetStreams;
+    private final Map<String, Integer> assignments;
+    private final LongAdder failovers = new LongAdder();
+
+    public NatsConnectionPool(Connection connection, ConnectionPoolProperties connectionPoolProperties) {
+        int size = Math.max(1, connectionPoolProperties.getSize());
+        this.assignments = connectionPoolProperties.getAssignments() != null ? new LinkedHashMap<>(connectionPoolProperties.getAssignments()) : new LinkedHashMap<>();
+        this.assignments.forEach((subject, index) -> {
+            if (index == null || index < 0 || index >= size) {
+                throw new NatsException("nats.pool.assignments " + subject + " -> " + index + " is not a connection of a pool of " + size);
+            }
+        });
+        this.connections = new Connection[size];
+        this.jetStreams = new JetStream[size];
+        connections[0] = connection;
+        try {
+            jetStreams[0] = connection.jetStream();
+            String name = connection.getOptions().getConnectionName();
+            for (int i = 1; i < size; i++) {
+                Options options = new Options.Builder(connection.getOptions()).connectionName((name != null ? name : "nats") + "-" + i).build();
+                connections[i] = Nats.connect(options);
+                jetStreams[i] = connections[i].jetStream();
+            }
+        } catch (IOException e) {
+            destroy();
+            throw new NatsException("open nats connection pool of " + size + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroy();
+            throw new NatsException("interrupted opening nats connection pool", e);
+        }
+        if (size > 1) {
+            log.info("nats connection pool of {} connections", size);
+        }
+    }
+
+    /**
+     * @param subject subject published or subscribed
+     * @return index of the connection of the subject
+     */
+    public int indexOf(String subject) {
+        if (connections.length == 1) {
+            return 0;
+        }
+        for (Map.Entry<String, Integer> assignment : assignments.entrySet()) {
+            if (assignment.getKey().equals(subject) || StreamProperties.covers(assignment.getKey(), subject)) {
+                return assignment.getValue();
+            }
+        }
+        return Math.floorMod(subject.hashCode(), connections.length);
+    }
+
+    /**
+     * @return connection of the subject whatever its state, for subscriptions
+     */
+    public Connection getConnection(String subject) {
+        return connections[indexOf(subject)];
+    }
+
+    /**
+     * @return JetStream context to publish the subject on, the next connected one while the connection of the subject is not
+     */
+    public JetStream jetStream(String subject) {
+        int index = indexOf(subject);
+        if (connections[index].getStatus() == Connection.Status.CONNECTED) {
+            return jetStreams[index];
+        }
+        for (int i = 1; i < connections.length; i++) {
+            int candidate = (index + i) % connections.length;
+            if (connections[candidate].getStatus() == Connection.Status.CONNECTED) {
+                failovers.increment();
+                return jetStreams[candidate];
+            }
+        }
+        //none connected: the assigned connection buffers until it reconnects
+        return jetStreams[index];
+    }
+
+    public int size() {
+        return connections.length;
+    }
+
+    public Connection getConnection(int index) {
+        return connections[index];
+    }
+
+    /**
+     * @return publishes sent on another connection than the one of their subject
+     */
+    public long getFailoverCount() {
+        return failovers.sum();
+    }
+
+    /**
+     * Close the connections the pool opened, the natsConnection bean is closed by the context
+     */
+    @Override
+    public void destroy() {
+        for (int i = 1; i < connections.length; i++) {
+            if (connections[i] == null) {
+                continue;
+            }
+            try {
+                connections[i].close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
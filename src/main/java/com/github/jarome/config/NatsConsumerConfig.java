@@ -1,8 +1,16 @@
 package com.github.jarome.config;
 
+import com.github.jarome.annotation.ExecutorType;
+import com.github.jarome.annotation.NatsBatchListener;
 import com.github.jarome.annotation.NatsListener;
+import com.github.jarome.annotation.NatsMessageKeyExtractor;
 import com.github.jarome.annotation.NatsMessageListener;
+import com.github.jarome.annotation.ReactiveNatsListener;
+import com.github.jarome.common.exception.NatsBatchException;
 import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.metrics.ConsumerMetrics;
+import com.github.jarome.metrics.NatsMetricsFactory;
+import com.github.jarome.reactive.ReactiveMessageDispatcher;
 import io.nats.client.*;
 import io.nats.client.api.*;
 import org.slf4j.Logger;
@@ -10,15 +18,22 @@ import org.slf4j.LoggerFactory;
 import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.aop.scope.ScopedProxyUtils;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.support.DefaultSingletonBeanRegistry;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.ContextStartedEvent;
 import org.springframework.core.MethodParameter;
 import org.springframework.messaging.converter.SmartMessageConverter;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
@@ -27,27 +42,69 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Configuration
 @DependsOn({"natsConnection", "natsMessageConverter"})
-public class NatsConsumerConfig implements ApplicationContextAware, SmartInitializingSingleton {
+public class NatsConsumerConfig implements ApplicationContextAware, SmartInitializingSingleton, ApplicationListener<ApplicationContextEvent>, DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(NatsConsumerConfig.class);
+    private static final Duration DEFAULT_IDLE_HEARTBEAT = Duration.ofSeconds(5);
+    /**
+     * Room above maxAckPending in the dispatcher of a push consumer for heartbeats and flow control requests
+     */
+    private static final long PENDING_LIMIT_HEADROOM = 1024;
+    public static final String CONTAINER_BEAN_SUFFIX = "NatsListenerContainer";
+    private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono", NatsConsumerConfig.class.getClassLoader());
     Connection connection;
+    /**
+     * Connections of the listener subscriptions, the consumers and streams are managed on {@link #connection}
+     */
+    NatsConnectionPool connectionPool;
     ConfigurableApplicationContext applicationContext;
     NatsMessageConverter natsMessageConverter;
     ConsumerProperties consumerProperties;
-    private List<JetStreamSubscription> consumers;
+    /**
+     * Also the monitor of starting containers registered in the background
+     */
+    private final Map<String, NatsListenerContainer> containers = new LinkedHashMap<>();
+    private final Map<String, Throwable> registrationFailures = new ConcurrentHashMap<>();
+    /**
+     * Stream lookups of the listeners being registered, listeners of the same stream share one
+     */
+    private final Map<String, CompletableFuture<StreamInfo>> streamInfos = new ConcurrentHashMap<>();
+    /**
+     * Settings of the streams used by the listeners or configured in nats.streams, by stream name
+     */
+    private final Map<String, StreamProperties> streams = new LinkedHashMap<>();
+    /**
+     * Filter subjects of the listeners by stream name
+     */
+    private final Map<String, List<String>> streamSubjects = new HashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ScheduledExecutorService autoscaleScheduler;
+    private ExecutorService startupExecutor;
+    private volatile int listenerCount;
+    private volatile boolean startupComplete;
+    private boolean contextRefreshed;
+    private boolean contextClosed;
+    private NatsMetricsFactory natsMetricsFactory = NatsMetricsFactory.NOOP;
 
-    public NatsConsumerConfig(Connection connection, ConfigurableApplicationContext applicationContext, ConsumerProperties consumerProperties, NatsMessageConverter natsMessageConverter) {
+    public NatsConsumerConfig(Connection connection, NatsConnectionPool connectionPool, ConfigurableApplicationContext applicationContext, ConsumerProperties consumerProperties, NatsMessageConverter natsMessageConverter) {
         this.connection = connection;
+        this.connectionPool = connectionPool;
         this.applicationContext = applicationContext;
         this.consumerProperties = consumerProperties;
         this.natsMessageConverter = natsMessageConverter;
@@ -55,104 +112,394 @@ public class NatsConsumerConfig implements ApplicationContextAware, SmartInitial
 
     @Override
     public void afterSingletonsInstantiated() {
+        natsMetricsFactory = applicationContext.getBeanProvider(NatsMetricsFactory.class).getIfAvailable(() -> NatsMetricsFactory.NOOP);
         Map<String, Object> beans = this.applicationContext.getBeansWithAnnotation(NatsMessageListener.class).entrySet().stream().filter(entry -> !ScopedProxyUtils.isScopedTarget(entry.getKey())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-        consumers = beans.entrySet().stream().map(e -> registerContainer(e.getKey(), e.getValue())).collect(Collectors.toList());
+        listenerCount = beans.size();
+        collectStreams(beans.values());
+        //streams configured for publishing only, no listener creates them
+        List<String> unusedStreams = streams.keySet().stream().filter(name -> !streamSubjects.containsKey(name)).collect(Collectors.toList());
+        if (beans.isEmpty() && unusedStreams.isEmpty()) {
+            startupComplete = true;
+            return;
+        }
+        //the management requests of the listeners are round trips, make them concurrently
+        startupExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(consumerProperties.getStartupParallelism(), beans.size() + unusedStreams.size())), new ThreadFactoryImpl("NatsConsumerStartup_", true));
+        Map<String, CompletableFuture<?>> streamSetups = new LinkedHashMap<>();
+        unusedStreams.forEach(name -> streamSetups.put(name, CompletableFuture.supplyAsync(() -> getOrCreateStream(name), startupExecutor)));
+        Map<String, CompletableFuture<NatsListenerContainer>> registrations = new LinkedHashMap<>();
+        beans.forEach((beanName, bean) -> registrations.put(beanName, CompletableFuture.supplyAsync(() -> registerContainer(beanName, bean), startupExecutor)));
+        if (consumerProperties.isLazyStartup()) {
+            List<CompletableFuture<?>> done = new ArrayList<>();
+            streamSetups.forEach((name, setup) -> done.add(setup.exceptionally(e -> {
+                registrationFailed("stream " + name, e);
+                return null;
+            })));
+            registrations.forEach((beanName, registration) -> done.add(registration
+                    .thenAccept(container -> addContainer(beanName, container))
+                    .exceptionally(e -> {
+                        registrationFailed(beanName, e);
+                        return null;
+                    })));
+            CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).whenComplete((v, e) -> finishStartup());
+            log.info("registering {} consumer(s) in the background", beans.size());
+            return;
+        }
+        RuntimeException failure = null;
+        for (Map.Entry<String, CompletableFuture<?>> setup : streamSetups.entrySet()) {
+            try {
+                setup.getValue().join();
+            } catch (CompletionException e) {
+                registrationFailed("stream " + setup.getKey(), e);
+                failure = e.getCause() instanceof NatsException ? (NatsException) e.getCause() : new NatsException("Initialize stream " + setup.getKey() + " fail", e.getCause());
+            }
+        }
+        for (Map.Entry<String, CompletableFuture<NatsListenerContainer>> registration : registrations.entrySet()) {
+            try {
+                addContainer(registration.getKey(), registration.getValue().join());
+            } catch (CompletionException e) {
+                registrationFailed(registration.getKey(), e);
+                if (failure == null) {
+                    failure = e.getCause() instanceof NatsException ? (NatsException) e.getCause() : new NatsException("Initialize consumer " + registration.getKey() + " fail", e.getCause());
+                }
+            }
+        }
+        finishStartup();
+        if (failure != null) {
+            throw failure;
+        }
     }
 
-    private JetStreamSubscription registerContainer(String beanName, Object bean) {
-        Class<?> clazz = AopProxyUtils.ultimateTargetClass(bean);
-        if (!NatsListener.class.isAssignableFrom(bean.getClass())) {
-            throw new NatsException(clazz + " don't implement" + NatsMessageListener.class.getName() + " quick change it");
+    /**
+     * Stream settings of the listeners in bean order, overridden by nats.streams
+     */
+    private void collectStreams(Collection<Object> beans) {
+        for (Object bean : beans) {
+            NatsMessageListener annotation = AopProxyUtils.ultimateTargetClass(bean).getAnnotation(NatsMessageListener.class);
+            streams.computeIfAbsent(annotation.stream(), name -> new StreamProperties()).fill(StreamProperties.of(annotation));
+            streamSubjects.computeIfAbsent(annotation.stream(), name -> new ArrayList<>()).add(annotation.filterSubject());
         }
-        Type parameterType = getParameterType(clazz);
-        MethodParameter methodParameter = getMethodParameter(clazz, parameterType);
-        NatsListener<Object> natsListener = ((NatsListener<Object>) bean);
-        NatsMessageListener annotation = clazz.getAnnotation(NatsMessageListener.class);
-        boolean autoAck = annotation.autoAck();
-        int threadMax = annotation.consumeThreadMax();
-        int threadNumber = annotation.consumeThreadNumber();
-        int queueSize = annotation.blockingQueueSize();
-        long pullInterval = annotation.pullInterval();
-        long maxWaitTime = annotation.maxWaitTime();
-        long keepAliveTime = annotation.keepAliveTime();
-        int pullBatchSize = annotation.pullBatchSize();
-        long pullDelayTime = annotation.pullDelayTime();
-        String stream = annotation.stream();
-        List<PullConsumer> consumers = consumerProperties.getConsumers();
-        if (consumers != null && !consumers.isEmpty()) {
-            for (PullConsumer pullConsumer : consumers) {
-                if (pullConsumer.getSubject().equals(annotation.filterSubject())) {
-                    autoAck = pullConsumer.getAutoAck() == null ? autoAck : pullConsumer.getAutoAck();
-                    threadMax = pullConsumer.getConsumeThreadMax() == null ? threadMax : pullConsumer.getConsumeThreadMax();
-                    threadNumber = pullConsumer.getConsumeThreadNumber() == null ? threadNumber : pullConsumer.getConsumeThreadNumber();
-                    queueSize = pullConsumer.getBlockingQueueSize() == null ? queueSize : pullConsumer.getBlockingQueueSize();
-                    pullInterval = pullConsumer.getPullInterval() == null ? pullInterval : Math.max(1L, pullConsumer.getPullInterval());
-                    maxWaitTime = pullConsumer.getMaxWaitTime() == null ? maxWaitTime : Math.max(1L, pullConsumer.getMaxWaitTime());
-                    keepAliveTime = pullConsumer.getKeepAliveTime() == null ? keepAliveTime : pullConsumer.getKeepAliveTime();
-                    pullBatchSize = pullConsumer.getPullBatchSize() == null ? pullBatchSize : Math.max(1, pullConsumer.getPullBatchSize());
-                    pullDelayTime = pullConsumer.getPullDelayTime() == null ? pullDelayTime : Math.max(0L, pullConsumer.getPullDelayTime());
+        List<StreamProperties> configured = consumerProperties.getStreams();
+        if (configured != null) {
+            for (StreamProperties streamProperties : configured) {
+                if (!StringUtils.hasLength(streamProperties.getName())) {
+                    throw new NatsException("nats.streams needs a name for every stream");
                 }
+                streams.computeIfAbsent(streamProperties.getName(), name -> new StreamProperties()).override(streamProperties);
+            }
+        }
+        streams.forEach((name, streamProperties) -> streamProperties.setName(name));
+    }
+
+    private void addContainer(String beanName, NatsListenerContainer container) {
+        synchronized (containers) {
+            if (contextClosed) {
+                container.discard();
+                return;
+            }
+            containers.put(beanName, container);
+            //a singleton so the context starts and stops it
+            applicationContext.getBeanFactory().registerSingleton(beanName + CONTAINER_BEAN_SUFFIX, container);
+            if (contextRefreshed) {
+                //registered in the background after the context started its lifecycle beans
+                container.start();
             }
         }
+    }
+
+    /**
+     * Replace a stopped container by a new one of the same listener and start it
+     */
+    private void restartContainer(String beanName) {
         try {
-            createStream(connection.jetStreamManagement(), stream, annotation.filterSubject());
-            JetStream js = connection.jetStream();
-            String deliverGroup = annotation.deliverGroup();
-            String deliverSubject = annotation.deliverSubject();
-            boolean isPost = false;
-            ConsumerConfiguration.Builder builder = ConsumerConfiguration.builder().durable(annotation.durable()).deliverSubject(deliverSubject).ackPolicy(AckPolicy.Explicit).filterSubject(annotation.filterSubject()).maxDeliver(annotation.maxDeliver());
-            if (StringUtils.hasLength(deliverSubject) && StringUtils.hasLength(deliverGroup)) {
-                //post
-                builder.deliverSubject(deliverSubject);
-                builder.deliverGroup(deliverGroup);
-                isPost = true;
+            NatsListenerContainer container = registerContainer(beanName, applicationContext.getBean(beanName));
+            if (containers.get(beanName).isPaused()) {
+                container.pause();
+            }
+            containers.put(beanName, container);
+            if (applicationContext.getBeanFactory() instanceof DefaultSingletonBeanRegistry) {
+                ((DefaultSingletonBeanRegistry) applicationContext.getBeanFactory()).destroySingleton(beanName + CONTAINER_BEAN_SUFFIX);
+                applicationContext.getBeanFactory().registerSingleton(beanName + CONTAINER_BEAN_SUFFIX, container);
             }
-            ConsumerConfiguration cc = builder.build();
-            ConsumerInfo consumerInfo = connection.jetStreamManagement().addOrUpdateConsumer(stream, cc);
-            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threadNumber, threadMax, keepAliveTime, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<>(queueSize));
-            if (isPost) {
-                Dispatcher dispatcher = connection.createDispatcher();
-                PushSubscribeOptions so = PushSubscribeOptions.builder().stream(stream).name(consumerInfo.getName()).deliverGroup(deliverGroup).bind(true).build();
-                boolean finalAutoAck = autoAck;
-                return js.subscribe(annotation.filterSubject(), dispatcher, msg -> invoke(natsListener, finalAutoAck, convertMessage(msg, parameterType, methodParameter), msg, threadPool), false, so);
-            } else {
-                //pull
-                PullSubscribeOptions so = PullSubscribeOptions.builder().stream(stream).name(consumerInfo.getName()).bind(true).build();
-                JetStreamSubscription sub = js.subscribe(annotation.filterSubject(), so);
-                connection.flush(Duration.ofSeconds(1));
-                long finalMaxWaitTime = maxWaitTime;
-                long finalPullInterval = pullInterval;
-                boolean finalAutoAck1 = autoAck;
-                int finalPullBatchSize = pullBatchSize;
-                long finalPullDelayTime = pullDelayTime;
-                new Thread(() -> {
-                    try {
-                        while (true) {
-                            if (finalPullDelayTime != 0L) {
-                                sub.nextMessage(finalPullDelayTime);
-                            }
-                            List<Message> msgList = sub.fetch(finalPullBatchSize, finalMaxWaitTime);
-                            if (msgList == null || msgList.isEmpty()) {
-                                sub.nextMessage(Duration.ofMillis(finalPullInterval));
-                                continue;
-                            }
-                            for (Message msg : msgList) {
-                                invoke(natsListener, finalAutoAck1, convertMessage(msg, parameterType, methodParameter), msg, threadPool);
-                            }
+            container.start();
+        } catch (RuntimeException e) {
+            registrationFailed(beanName, e);
+        }
+    }
+
+    private void registrationFailed(String beanName, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        registrationFailures.put(beanName, cause);
+        log.error("register consumer {} failed", beanName, cause);
+    }
+
+    private void finishStartup() {
+        streamInfos.clear();
+        startupExecutor.shutdown();
+        startupComplete = true;
+        log.info("{} of {} consumer(s) registered", getContainers().size(), listenerCount);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationContextEvent event) {
+        if (event.getApplicationContext() != applicationContext) {
+            return;
+        }
+        synchronized (containers) {
+            if (event instanceof ContextRefreshedEvent) {
+                contextRefreshed = true;
+                //registered in the background while the context was starting its lifecycle beans
+                containers.forEach((beanName, container) -> {
+                    if (!container.isRunning()) {
+                        try {
+                            container.start();
+                        } catch (RuntimeException e) {
+                            registrationFailed(beanName, e);
                         }
-                    } catch (Exception e) {
-                        //Exceptions cannot be thrown or the thread will interrupt
-                        log.error("Pull Message Service Run Method exception", e);
                     }
-                }).start();
-                return sub;
+                });
+            } else if (event instanceof ContextStartedEvent) {
+                //context.stop() then start(): stopped containers released their workers and subscription
+                new ArrayList<>(containers.keySet()).forEach(beanName -> {
+                    if (containers.get(beanName).isStopped()) {
+                        restartContainer(beanName);
+                    }
+                });
+                streamInfos.clear();
+            } else if (event instanceof ContextClosedEvent) {
+                contextClosed = true;
+            }
+        }
+    }
+
+    private NatsListenerContainer registerContainer(String beanName, Object bean) {
+        Class<?> clazz = AopProxyUtils.ultimateTargetClass(bean);
+        boolean batch = NatsBatchListener.class.isAssignableFrom(bean.getClass());
+        boolean reactive = REACTOR_PRESENT && ReactiveNatsListener.class.isAssignableFrom(bean.getClass());
+        if (!batch && !reactive && !NatsListener.class.isAssignableFrom(bean.getClass())) {
+            throw new NatsException(clazz + " don't implement" + NatsListener.class.getName() + " or " + NatsBatchListener.class.getName() + " quick change it");
+        }
+        Type parameterType = getParameterType(clazz, batch ? NatsBatchListener.class : reactive ? ReactiveNatsListener.class : NatsListener.class);
+        MethodParameter methodParameter = getMethodParameter(clazz, parameterType, batch);
+        NatsMessageListener annotation = clazz.getAnnotation(NatsMessageListener.class);
+        if (StringUtils.hasLength(annotation.codec()) && natsMessageConverter.getCodec(annotation.codec()) == null) {
+            throw new NatsException("no codec registered for content type " + annotation.codec() + " of " + clazz);
+        }
+        NatsMessageReader messageReader = new NatsMessageReader(natsMessageConverter, parameterType, methodParameter, StringUtils.hasLength(annotation.codec()) ? annotation.codec() : null);
+        ListenerSettings settings = ListenerSettings.of(annotation, consumerProperties.getConsumers());
+        NatsMessageKeyExtractor keyExtractor = getKeyExtractor(annotation);
+        //one cumulative ack only covers messages of this instance on ordered lanes, elsewhere every ack is sent
+        boolean ordered = !batch && !reactive && keyExtractor != null;
+        if (ordered && settings.coalesceAcks && StringUtils.hasLength(annotation.deliverGroup())) {
+            throw new NatsException("coalesceAcks of the ordered listener " + beanName + " cannot use a deliverGroup, AckPolicy.All would ack the messages of the other members");
+        }
+        if (settings.executorType == ExecutorType.VIRTUAL && !VirtualThreads.isSupported()) {
+            throw new NatsException("executor VIRTUAL of " + beanName + " needs Java 21 and the multi-release starter jar");
+        }
+        try {
+            String stream = annotation.stream();
+            StreamInfo streamInfo = getOrCreateStream(stream);
+            boolean cumulativeAcks = ordered && useCumulativeAcks(beanName, settings, annotation.maxDeliver(), streamInfo.getConfiguration().getRetentionPolicy());
+            boolean isPost = StringUtils.hasLength(annotation.deliverSubject());
+            ConsumerInfo consumerInfo = connection.jetStreamManagement().addOrUpdateConsumer(stream, newConsumerConfiguration(annotation, settings, cumulativeAcks));
+            ConsumerMetrics metrics = natsMetricsFactory.consumerMetrics(stream, consumerInfo.getName(), annotation.filterSubject());
+            AckCoalescer ackCoalescer = settings.coalesceAcks ? new AckCoalescer(settings.ackBatchSize, annotation.maxDeliver(), cumulativeAcks) : null;
+            MessageAcknowledger acknowledger = newAcknowledger(beanName, consumerInfo.getName(), settings.coalesceAcks ? ackCoalescer : MessageAcknowledger.EXPLICIT,
+                    new RetryPolicy(settings.retryDelay, settings.retryMultiplier, settings.retryMaxDelay, settings.retryBackoff, annotation.maxDeliver()), settings.deadLetterSubject, metrics);
+            ListenerDispatch dispatch = newDispatch(beanName, bean, batch, reactive, keyExtractor, isPost, settings, messageReader, acknowledger, metrics);
+            if (settings.autoscale && dispatch.autoscaler == null) {
+                log.warn("autoscale of {} ignored, it applies to pull listeners handling one message at a time without ordering", beanName);
             }
+            Connection listenerConnection = connectionPool.getConnection(annotation.filterSubject());
+            NatsListenerContainer container = isPost
+                    ? newPushContainer(beanName, annotation, settings, consumerInfo, listenerConnection, dispatch, ackCoalescer, metrics)
+                    : newPullContainer(beanName, annotation, settings, consumerInfo, listenerConnection, dispatch, ackCoalescer, metrics);
+            container.setMetrics(metrics);
+            if (dispatch.threadPool instanceof ThreadPoolExecutor) {
+                container.setConsumeExecutor((ThreadPoolExecutor) dispatch.threadPool, dispatch.creditsPerThread);
+            }
+            if (settings.paused) {
+                container.pause();
+            }
+            return container;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new NatsException("Initialize consumer " + beanName + " fail", e);
         }
     }
 
+    /**
+     * Whether the coalesced acks of an ordered listener are cumulative, a WorkQueue stream only takes explicit acks
+     */
+    static boolean useCumulativeAcks(String beanName, ListenerSettings settings, long maxDeliver, RetentionPolicy retention) {
+        if (!settings.coalesceAcks) {
+            return false;
+        }
+        if (retention == RetentionPolicy.WorkQueue) {
+            log.warn("coalesceAcks of the ordered listener {} sends every ack, the WorkQueue stream requires AckPolicy.Explicit", beanName);
+            return false;
+        }
+        if (maxDeliver <= 0) {
+            //a message failing forever would hold the cumulative ack back forever
+            throw new NatsException("coalesceAcks of the ordered listener " + beanName + " needs maxDeliver > 0, a failing message holds back the ack of every later message until its last delivery");
+        }
+        return true;
+    }
+
+    /**
+     * Durable consumer of a listener, a push consumer when the listener has a deliverSubject
+     */
+    private ConsumerConfiguration newConsumerConfiguration(NatsMessageListener annotation, ListenerSettings settings, boolean cumulativeAcks) {
+        String deliverSubject = annotation.deliverSubject();
+        ConsumerConfiguration.Builder builder = ConsumerConfiguration.builder().durable(annotation.durable()).deliverSubject(deliverSubject).ackPolicy(cumulativeAcks ? AckPolicy.All : AckPolicy.Explicit).filterSubject(annotation.filterSubject()).maxDeliver(annotation.maxDeliver());
+        if (StringUtils.hasLength(deliverSubject)) {
+            //post
+            builder.deliverSubject(deliverSubject);
+            if (StringUtils.hasLength(annotation.deliverGroup())) {
+                builder.deliverGroup(annotation.deliverGroup());
+            } else if (settings.flowControl) {
+                //the server does not allow flow control or heartbeats for queue groups
+                builder.flowControl(settings.idleHeartbeat > 0 ? Duration.ofMillis(settings.idleHeartbeat) : DEFAULT_IDLE_HEARTBEAT);
+            } else if (settings.idleHeartbeat > 0) {
+                builder.idleHeartbeat(Duration.ofMillis(settings.idleHeartbeat));
+            }
+            //never let the server push more than the pool can hold, the rest waits on the server
+            builder.maxAckPending(settings.effectiveMaxAckPending());
+            if (settings.rateLimit > 0) {
+                builder.rateLimit(settings.rateLimit);
+            }
+        }
+        if (settings.ackWait > 0) {
+            builder.ackWait(Duration.ofMillis(settings.ackWait));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Dispatcher of a listener with its consume pool and the credits the container hands out
+     */
+    @SuppressWarnings("unchecked")
+    private ListenerDispatch newDispatch(String beanName, Object bean, boolean batch, boolean reactive, NatsMessageKeyExtractor keyExtractor, boolean isPost,
+                                         ListenerSettings settings, NatsMessageReader messageReader, MessageAcknowledger acknowledger, ConsumerMetrics metrics) {
+        ListenerDispatch dispatch = new ListenerDispatch();
+        dispatch.capacity = settings.threadMax;
+        dispatch.pullBatchSize = settings.pullBatchSize;
+        boolean autoAck = settings.autoAck;
+        if (batch) {
+            NatsBatchListener<Object> natsBatchListener = (NatsBatchListener<Object>) bean;
+            dispatch.threadPool = newConsumeExecutor(beanName, settings, metrics);
+            dispatch.dispatcher = new BatchMessageDispatcher(dispatch.threadPool, getScheduler(), settings.batchSize, settings.batchLingerTime, msgList -> invokeBatch(natsBatchListener, autoAck, msgList, messageReader, acknowledger, metrics));
+            //every worker thread takes a whole batch
+            dispatch.capacity = settings.threadMax * settings.batchSize;
+            dispatch.creditsPerThread = settings.batchSize;
+            dispatch.pullBatchSize = Math.max(settings.pullBatchSize, settings.batchSize);
+        } else if (reactive) {
+            ReactiveNatsListener<Object> reactiveNatsListener = (ReactiveNatsListener<Object>) bean;
+            //the listener does not block, it runs on the fetching thread and the credits bound the pending Monos
+            dispatch.dispatcher = new ReactiveMessageDispatcher(reactiveNatsListener, msg -> {
+                countRedelivery(msg, metrics);
+                return convertMessage(msg, messageReader, metrics);
+            }, autoAck, acknowledger, metrics);
+        } else if (keyExtractor != null) {
+            NatsListener<Object> natsListener = (NatsListener<Object>) bean;
+            int lanes = settings.orderLanes > 0 ? settings.orderLanes : settings.threadMax;
+            OrderedMessageDispatcher orderedMessageDispatcher = new OrderedMessageDispatcher(beanName, lanes, settings.queueSize / lanes, keyExtractor, msg -> invoke(natsListener, autoAck, msg, messageReader, acknowledger, metrics), settings.executorType);
+            metrics.monitorLanes(orderedMessageDispatcher);
+            dispatch.dispatcher = orderedMessageDispatcher;
+            //look ahead past a busy key so the other lanes keep working
+            dispatch.capacity = lanes + settings.queueSize;
+        } else {
+            NatsListener<Object> natsListener = (NatsListener<Object>) bean;
+            dispatch.threadPool = newConsumeExecutor(beanName, settings, metrics);
+            Consumer<Message> messageHandler = msg -> invoke(natsListener, autoAck, msg, messageReader, acknowledger, metrics);
+            if (settings.autoscale && !isPost) {
+                dispatch.autoscaler = new ConsumerAutoscaler(beanName, dispatch.threadPool instanceof ThreadPoolExecutor ? (ThreadPoolExecutor) dispatch.threadPool : null,
+                        settings.threadNumber, settings.threadMax, settings.autoscaleLatencyTarget, metrics);
+                messageHandler = dispatch.autoscaler.timed(messageHandler);
+                //start small, the autoscaler grows it while messages are pending
+                dispatch.capacity = dispatch.autoscaler.getConcurrency();
+            }
+            dispatch.dispatcher = new ExecutorMessageDispatcher(dispatch.threadPool, messageHandler);
+        }
+        return dispatch;
+    }
+
+    private PushListenerContainer newPushContainer(String beanName, NatsMessageListener annotation, ListenerSettings settings, ConsumerInfo consumerInfo,
+                                                   Connection listenerConnection, ListenerDispatch dispatch, AckCoalescer ackCoalescer, ConsumerMetrics metrics) {
+        String deliverGroup = annotation.deliverGroup();
+        PushSubscribeOptions so = PushSubscribeOptions.builder().stream(annotation.stream()).name(consumerInfo.getName()).deliverGroup(StringUtils.hasLength(deliverGroup) ? deliverGroup : null).bind(true).build();
+        PushListenerContainer pushContainer = new PushListenerContainer(beanName, dispatch.dispatcher, ackCoalescer, getScheduler(), settings.ackFlushInterval, settings.shutdownTimeout, settings.shutdownNakDelay,
+                listenerConnection, annotation.filterSubject(), so);
+        //the server keeps at most maxAckPending unacked messages out, buffering more means a stuck pool
+        pushContainer.setPendingLimits(settings.pendingMessageLimit > 0 ? settings.pendingMessageLimit : settings.effectiveMaxAckPending() + PENDING_LIMIT_HEADROOM, settings.pendingByteLimit);
+        metrics.monitorDispatcher(pushContainer);
+        return pushContainer;
+    }
+
+    private PullListenerContainer newPullContainer(String beanName, NatsMessageListener annotation, ListenerSettings settings, ConsumerInfo consumerInfo,
+                                                   Connection listenerConnection, ListenerDispatch dispatch, AckCoalescer ackCoalescer, ConsumerMetrics metrics) throws IOException, JetStreamApiException {
+        PullSubscribeOptions so = PullSubscribeOptions.builder().stream(annotation.stream()).name(consumerInfo.getName()).bind(true).build();
+        //no flush: the pull requests are written after the subscription on the same connection
+        JetStreamSubscription sub = listenerConnection.jetStream().subscribe(annotation.filterSubject(), so);
+        String pullThreadName = "NatsPullMessageService_" + beanName + "_";
+        ThreadFactory pullThreadFactory = settings.executorType == ExecutorType.VIRTUAL ? VirtualThreads.newThreadFactory(pullThreadName) : new ThreadFactoryImpl(pullThreadName);
+        //one credit per message a worker thread can take, handed back when the handler returns
+        PullListenerContainer pullContainer = new PullListenerContainer(beanName, dispatch.dispatcher, ackCoalescer, getScheduler(), settings.ackFlushInterval, settings.shutdownTimeout, settings.shutdownNakDelay,
+                sub, annotation.filterSubject(), dispatcher -> new PullMessageService(sub, dispatch.capacity, dispatch.pullBatchSize, settings.maxWaitTime, settings.pullInterval, settings.pullDelayTime, dispatcher, metrics), pullThreadFactory);
+        ConsumerAutoscaler autoscaler = dispatch.autoscaler;
+        if (autoscaler != null) {
+            autoscaler.attach(pullContainer);
+            pullContainer.setAutoscaler(autoscaler, getAutoscaleScheduler().scheduleWithFixedDelay(autoscaler::adjust, settings.autoscaleInterval, settings.autoscaleInterval, TimeUnit.MILLISECONDS));
+        }
+        return pullContainer;
+    }
+
+    /**
+     * Dispatcher of a listener and what its container needs to size the flow of messages
+     */
+    private static class ListenerDispatch {
+        MessageDispatcher dispatcher;
+        ExecutorService threadPool;
+        ConsumerAutoscaler autoscaler;
+        /**
+         * Messages the workers can take at once
+         */
+        int capacity;
+        int creditsPerThread = 1;
+        int pullBatchSize;
+    }
+
+    /**
+     * Naks with the retry delays and sends the last failed attempt to the dead letter subject, when configured
+     */
+    private MessageAcknowledger newAcknowledger(String beanName, String consumerName, MessageAcknowledger acknowledger, RetryPolicy retryPolicy,
+                                                String deadLetterSubject, ConsumerMetrics metrics) {
+        boolean deadLetter = StringUtils.hasLength(deadLetterSubject);
+        if (deadLetter && retryPolicy.getMaxDeliver() <= 0) {
+            log.warn("deadLetterSubject of {} ignored, it needs maxDeliver > 0", beanName);
+            deadLetter = false;
+        }
+        if (!deadLetter && retryPolicy.isImmediate()) {
+            return acknowledger;
+        }
+        return new RetryingAcknowledger(acknowledger, retryPolicy, deadLetter ? deadLetterSubject : null,
+                deadLetter ? applicationContext.getBean(NatsTemplate.class) : null, consumerName, metrics);
+    }
+
+    /**
+     * Consumer pool of a listener: a platform thread pool, or a virtual thread per message capped at threadMax
+     */
+    private ExecutorService newConsumeExecutor(String beanName, ListenerSettings settings, ConsumerMetrics metrics) {
+        String threadNamePrefix = "NatsConsumeThread_" + beanName + "_";
+        if (settings.executorType == ExecutorType.VIRTUAL) {
+            VirtualThreadExecutor executor = new VirtualThreadExecutor(VirtualThreads.newThreadFactory(threadNamePrefix), settings.threadMax);
+            metrics.monitorExecutor(executor);
+            return executor;
+        }
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(settings.threadNumber, settings.threadMax, settings.keepAliveTime, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<>(settings.queueSize), new ThreadFactoryImpl(threadNamePrefix), new BlockingRejectedExecutionHandler());
+        metrics.monitorExecutor(threadPool);
+        return threadPool;
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = (ConfigurableApplicationContext) applicationContext;
@@ -161,15 +508,16 @@ public class NatsConsumerConfig implements ApplicationContextAware, SmartInitial
     /**
      * Get the input parameter type of the interface
      *
-     * @param clazz class
+     * @param clazz             class
+     * @param listenerInterface {@link NatsListener} or {@link NatsBatchListener}
      * @return Types of formal parameters of the interface
      */
-    private Type getParameterType(Class<?> clazz) {
+    private Type getParameterType(Class<?> clazz, Class<?> listenerInterface) {
         Type matchedGenericInterface = null;
         while (Objects.nonNull(clazz)) {
             Type[] interfaces = clazz.getGenericInterfaces();
             for (Type type : interfaces) {
-                if (type instanceof ParameterizedType && (Objects.equals(((ParameterizedType) type).getRawType(), NatsListener.class))) {
+                if (type instanceof ParameterizedType && (Objects.equals(((ParameterizedType) type).getRawType(), listenerInterface))) {
                     matchedGenericInterface = type;
                     break;
                 }
@@ -186,7 +534,7 @@ public class NatsConsumerConfig implements ApplicationContextAware, SmartInitial
         return Object.class;
     }
 
-    private MethodParameter getMethodParameter(Class<?> targetClass, Type messageType) {
+    private MethodParameter getMethodParameter(Class<?> targetClass, Type messageType, boolean batch) {
         Class clazz;
         if (messageType instanceof ParameterizedType && natsMessageConverter.getMessageConverter() instanceof SmartMessageConverter) {
             clazz = (Class) ((ParameterizedType) messageType).getRawType();
@@ -196,6 +544,10 @@ public class NatsConsumerConfig implements ApplicationContextAware, SmartInitial
             throw new NatsException("parameterType:" + messageType + " of onMessage method is not supported");
         }
         try {
+            if (batch) {
+                //the element type of onMessage(List<T>)
+                return new MethodParameter(targetClass.getMethod("onMessage", List.class), 0).nested();
+            }
             final Method method = targetClass.getMethod("onMessage", clazz);
             return new MethodParameter(method, 0);
         } catch (NoSuchMethodException e) {
@@ -204,48 +556,183 @@ public class NatsConsumerConfig implements ApplicationContextAware, SmartInitial
         }
     }
 
-    private Object convertMessage(Message msg, Type parameterType, MethodParameter methodParameter) {
-        String value = new String(msg.getData(), StandardCharsets.UTF_8);
-        if (Objects.equals(parameterType, String.class)) {
-            return value;
+    private static Object convertMessage(Message msg, NatsMessageReader messageReader, ConsumerMetrics metrics) {
+        try {
+            return messageReader.read(msg);
+        } catch (Exception e) {
+            metrics.convertFailed();
+            log.error("convert failed. str:{}, msgType:{}", new String(msg.getData(), StandardCharsets.UTF_8), messageReader.getType());
+            throw new NatsException("cannot convert message to " + messageReader.getType(), e);
         }
+    }
+
+
+    private void invoke(NatsListener<Object> natsListener, boolean autoAck, Message msg, NatsMessageReader messageReader, MessageAcknowledger acknowledger, ConsumerMetrics metrics) {
+        countRedelivery(msg, metrics);
+        long start = System.nanoTime();
         try {
-            if (parameterType instanceof Class) {
-                return natsMessageConverter.getMessageConverter().fromMessage(MessageBuilder.withPayload(value).build(), (Class<?>) parameterType);
-            } else {
-                //有泛型的
-                return ((SmartMessageConverter) natsMessageConverter.getMessageConverter()).fromMessage(MessageBuilder.withPayload(value).build(), (Class<?>) ((ParameterizedType) parameterType).getRawType(), methodParameter);
+            natsListener.onMessage(convertMessage(msg, messageReader, metrics));
+            metrics.handled(System.nanoTime() - start, true);
+            if (autoAck) {
+                acknowledger.ack(msg);
+                metrics.acked(1);
             }
         } catch (Exception e) {
-            log.error("convert failed. str:{}, msgType:{}", value, parameterType);
-            throw new NatsException("cannot convert message to " + parameterType, e);
+            metrics.handled(System.nanoTime() - start, false);
+            acknowledger.nak(msg, e);
+            metrics.nacked(1);
+            log.error(e.getMessage(), e);
+            throw new NatsException("invoke msg failed:" + e.getMessage(), e);
         }
     }
 
+    private static void countRedelivery(Message msg, ConsumerMetrics metrics) {
+        if (msg.isJetStream() && msg.metaData().deliveredCount() > 1) {
+            metrics.redelivered();
+        }
+    }
 
-    private void invoke(NatsListener<Object> pulsarListener, boolean autoAck, Object obj, Message msg, ThreadPoolExecutor threadPoolExecutor) {
-        threadPoolExecutor.execute(() -> {
+    /**
+     * Hand a batch to the listener, a {@link NatsBatchException} naks only the messages at its failed indexes
+     */
+    static void invokeBatch(NatsBatchListener<Object> natsBatchListener, boolean autoAck, List<Message> msgList, NatsMessageReader messageReader, MessageAcknowledger acknowledger, ConsumerMetrics metrics) {
+        List<Message> converted = new ArrayList<>(msgList.size());
+        List<Object> objs = new ArrayList<>(msgList.size());
+        for (Message msg : msgList) {
+            countRedelivery(msg, metrics);
             try {
-                pulsarListener.onMessage(obj);
-                if (autoAck) {
-                    msg.ack();
-                }
+                objs.add(convertMessage(msg, messageReader, metrics));
+                converted.add(msg);
             } catch (Exception e) {
-                msg.nak();
+                acknowledger.nak(msg, e);
+                metrics.nacked(1);
                 log.error(e.getMessage(), e);
-                throw new NatsException("invoke msg failed:" + e.getMessage(), e);
             }
-        });
+        }
+        if (objs.isEmpty()) {
+            return;
+        }
+        Set<Integer> failedIndexes = Collections.emptySet();
+        NatsBatchException failure = null;
+        long start = System.nanoTime();
+        try {
+            natsBatchListener.onMessage(objs);
+            metrics.handled(System.nanoTime() - start, true);
+        } catch (NatsBatchException e) {
+            metrics.handled(System.nanoTime() - start, false);
+            failedIndexes = new HashSet<>(e.getFailedIndexes());
+            failure = e;
+            log.error(e.getMessage(), e);
+        } catch (Exception e) {
+            metrics.handled(System.nanoTime() - start, false);
+            converted.forEach(msg -> acknowledger.nak(msg, e));
+            metrics.nacked(converted.size());
+            log.error(e.getMessage(), e);
+            return;
+        }
+        int acked = 0;
+        for (int i = 0; i < converted.size(); i++) {
+            if (failedIndexes.contains(i)) {
+                acknowledger.nak(converted.get(i), failure);
+            } else if (autoAck) {
+                acknowledger.ack(converted.get(i));
+                acked++;
+            }
+        }
+        metrics.acked(acked);
+        metrics.nacked(failedIndexes.size());
+    }
+
+    /**
+     * Ordering key of the listener, null when messages need no ordering
+     */
+    private NatsMessageKeyExtractor getKeyExtractor(NatsMessageListener annotation) {
+        if (StringUtils.hasLength(annotation.orderKeyExtractor())) {
+            return applicationContext.getBean(annotation.orderKeyExtractor(), NatsMessageKeyExtractor.class);
+        }
+        if (StringUtils.hasLength(annotation.orderKeyHeader())) {
+            return new HeaderKeyExtractor(annotation.orderKeyHeader());
+        }
+        if (annotation.orderKeySubjectToken() >= 0) {
+            return new SubjectTokenKeyExtractor(annotation.orderKeySubjectToken());
+        }
+        return null;
+    }
+
+    /**
+     * Timer of batch linger and ack flushes, shared by all consumers
+     */
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("NatsConsumerTimer_", true));
+        }
+        return scheduler;
+    }
+
+    /**
+     * Look up or create the stream once for all listeners registered together
+     */
+    private StreamInfo getOrCreateStream(String streamName) {
+        CompletableFuture<StreamInfo> lookup = new CompletableFuture<>();
+        CompletableFuture<StreamInfo> shared = streamInfos.putIfAbsent(streamName, lookup);
+        if (shared == null) {
+            try {
+                lookup.complete(createOrUpdateStream(connection.jetStreamManagement(), streams.get(streamName),
+                        StreamProperties.withoutOverlaps(streamSubjects.getOrDefault(streamName, Collections.emptyList()))));
+            } catch (IOException | RuntimeException e) {
+                lookup.completeExceptionally(e);
+            }
+            shared = lookup;
+        }
+        try {
+            return shared.join();
+        } catch (CompletionException e) {
+            throw new NatsException("cannot get stream " + streamName + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Timer of the autoscalers, apart from the shared timer because every step reads the consumer info from the server
+     */
+    private synchronized ScheduledExecutorService getAutoscaleScheduler() {
+        if (autoscaleScheduler == null) {
+            autoscaleScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("NatsConsumerAutoscaler_", true));
+        }
+        return autoscaleScheduler;
     }
 
-    private StreamInfo createStream(JetStreamManagement jsm, String streamName, String... subjects) {
+    /**
+     * Create the stream, or update the configured settings of an existing stream that differ
+     *
+     * @param listenerSubjects filter subjects of the listeners of the stream
+     */
+    private StreamInfo createOrUpdateStream(JetStreamManagement jsm, StreamProperties streamProperties, List<String> listenerSubjects) {
+        String streamName = streamProperties.getName();
         StreamInfo streamInfo = getStreamInfo(jsm, streamName);
-        if (streamInfo == null) {
-            //创建
-            log.info("not exist stream {} with subject(s) {}", streamName, subjects);
-            streamInfo = createStream(jsm, streamName, StorageType.File, subjects);
+        try {
+            if (streamInfo == null) {
+                //创建
+                log.info("not exist stream {} with subject(s) {}", streamName, listenerSubjects);
+                StreamInfo si = jsm.addStream(streamProperties.toConfiguration(listenerSubjects));
+                log.info("Created stream {} with subject(s) {}", streamName, si.getConfiguration().getSubjects());
+                return si;
+            }
+            StreamConfiguration updated = streamProperties.update(streamInfo.getConfiguration(), listenerSubjects);
+            if (updated == null) {
+                return streamInfo;
+            }
+            try {
+                StreamInfo si = jsm.updateStream(updated);
+                log.info("Updated stream {} to the configured settings", streamName);
+                return si;
+            } catch (JetStreamApiException e) {
+                //e.g. storage type or retention cannot change, keep consuming from the stream as it is
+                log.warn("cannot update stream {} to the configured settings: {}", streamName, e.getMessage());
+                return streamInfo;
+            }
+        } catch (IOException | JetStreamApiException e) {
+            throw new NatsException("create stream error: " + e.getMessage(), e);
         }
-        return streamInfo;
     }
 
 
@@ -273,7 +760,54 @@ public class NatsConsumerConfig implements ApplicationContextAware, SmartInitial
         }
     }
 
+    /**
+     * @return subscriptions of the started consumers
+     */
     public List<JetStreamSubscription> getConsumers() {
-        return consumers;
+        return getContainers().values().stream().map(NatsListenerContainer::getSubscription).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * @return listener containers registered so far by listener bean name
+     */
+    public Map<String, NatsListenerContainer> getContainers() {
+        synchronized (containers) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(containers));
+        }
+    }
+
+    /**
+     * @return listener beans found on startup
+     */
+    public int getListenerCount() {
+        return listenerCount;
+    }
+
+    /**
+     * @return registration errors by listener bean name
+     */
+    public Map<String, Throwable> getRegistrationFailures() {
+        return Collections.unmodifiableMap(registrationFailures);
+    }
+
+    /**
+     * @return true once every listener is registered or failed
+     */
+    public boolean isStartupComplete() {
+        return startupComplete;
+    }
+
+    @Override
+    public void destroy() {
+        //the containers are stopped by the context before
+        if (startupExecutor != null) {
+            startupExecutor.shutdownNow();
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (autoscaleScheduler != null) {
+            autoscaleScheduler.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,406 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifecycle of one listener. Fetching starts with the application context; on stop the container stops fetching,
+ * waits up to {@code shutdownTimeout} ms for the messages already handed to the workers, flushes coalesced acks
+ * and naks whatever is left (after {@code shutdownNakDelay} ms) so it is redelivered right away instead of after the ack wait.
+ * Stopping is terminal: the workers and the subscription are released, a restarted context registers a new container.
+ */
+public abstract class NatsListenerContainer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(NatsListenerContainer.class);
+
+    private final String name;
+    private final MessageDispatcher messageDispatcher;
+    private final AckCoalescer ackCoalescer;
+    private final ScheduledExecutorService scheduler;
+    private final long ackFlushInterval;
+    private final long shutdownTimeout;
+    private final long shutdownNakDelay;
+    /**
+     * Messages handed to the dispatcher and not handled yet
+     */
+    private final Set<Message> inFlight = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> ackFlush;
+    private volatile boolean running;
+    /**
+     * Set once stopped or discarded, the container cannot start again
+     */
+    private volatile boolean stopped;
+    private volatile boolean paused;
+    /**
+     * Consumer pool resized by {@link #update(PullConsumer)}, null when the listener has none
+     */
+    private ThreadPoolExecutor consumeExecutor;
+    /**
+     * Credits of the fetching per consumer thread
+     */
+    private int creditsPerThread = 1;
+    private ConsumerAutoscaler autoscaler;
+    private ScheduledFuture<?> autoscaleTask;
+    private ConsumerMetrics metrics = ConsumerMetrics.NOOP;
+
+    /**
+     * @param name              listener bean name
+     * @param messageDispatcher dispatcher of the listener
+     * @param ackCoalescer      coalesced acks, null for explicit acks
+     * @param scheduler         timer of the ack flushes
+     * @param ackFlushInterval  max time between coalesced acks, ms
+     * @param shutdownTimeout   max time to wait for the messages in flight on stop, ms
+     * @param shutdownNakDelay  redelivery delay of the messages naked on stop, ms
+     */
+    protected NatsListenerContainer(String name, MessageDispatcher messageDispatcher, AckCoalescer ackCoalescer,
+                                    ScheduledExecutorService scheduler, long ackFlushInterval, long shutdownTimeout, long shutdownNakDelay) {
+        this.name = name;
+        this.messageDispatcher = messageDispatcher;
+        this.ackCoalescer = ackCoalescer;
+        this.scheduler = scheduler;
+        this.ackFlushInterval = ackFlushInterval;
+        this.shutdownTimeout = Math.max(0L, shutdownTimeout);
+        this.shutdownNakDelay = Math.max(0L, shutdownNakDelay);
+    }
+
+    /**
+     * Start receiving messages
+     */
+    protected abstract void startFetching() throws Exception;
+
+    /**
+     * Stop receiving messages, messages that still arrive go to {@link #nakLeftover(Message)}
+     *
+     * @param deadline {@link System#nanoTime()} to give up waiting
+     */
+    protected abstract void stopFetching(long deadline) throws Exception;
+
+    /**
+     * Release the subscription once the messages in flight are settled
+     */
+    protected abstract void closeSubscription() throws Exception;
+
+    /**
+     * Stop receiving messages without releasing the subscription, messages already received are handled
+     */
+    protected abstract void pauseFetching() throws Exception;
+
+    protected abstract void resumeFetching() throws Exception;
+
+    /**
+     * Messages the fetching may hold at once changed
+     *
+     * @param capacity max messages in flight
+     */
+    protected void resized(int capacity) {
+    }
+
+    /**
+     * @return subscription of the listener, null while a push listener is not started
+     */
+    public abstract JetStreamSubscription getSubscription();
+
+    /**
+     * @return filter subject of the consumer
+     */
+    public abstract String getSubject();
+
+    /**
+     * Hand a received message to the workers
+     *
+     * @param msg  received message
+     * @param done run once the message is handled
+     */
+    protected void dispatch(Message msg, Runnable done) {
+        if (ackCoalescer != null) {
+            ackCoalescer.delivered(msg);
+        }
+        inFlight.add(msg);
+        try {
+            messageDispatcher.dispatch(msg, () -> {
+                inFlight.remove(msg);
+                done.run();
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(msg);
+            throw e;
+        }
+    }
+
+    /**
+     * Nak a message that will not be handled, so it is redelivered without waiting for the ack wait
+     *
+     * @param msg message received or dispatched but not handled
+     */
+    protected void nakLeftover(Message msg) {
+        if (ackCoalescer != null) {
+            //hold the coalesced ack back until the message is handled again
+            ackCoalescer.delivered(msg);
+        }
+        try {
+            if (shutdownNakDelay > 0L) {
+                msg.nakWithDelay(Duration.ofMillis(shutdownNakDelay));
+            } else {
+                msg.nak();
+            }
+        } catch (Exception e) {
+            log.warn("nak of {} on stop failed: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (stopped) {
+            log.warn("consumer {} was stopped, it cannot start again", name);
+            return;
+        }
+        running = true;
+        try {
+            startFetching();
+        } catch (Exception e) {
+            running = false;
+            throw new NatsException("Start consumer " + name + " fail", e);
+        }
+        if (ackCoalescer != null) {
+            ackFlush = scheduler.scheduleWithFixedDelay(ackCoalescer::flush, ackFlushInterval, ackFlushInterval, TimeUnit.MILLISECONDS);
+        }
+        log.info("consumer {} started{}", name, paused ? " paused" : "");
+    }
+
+    /**
+     * Stop receiving messages until {@link #resume()}; the messages already received are handled and acked as usual.
+     * A container paused before start starts paused.
+     */
+    public synchronized void pause() {
+        if (paused) {
+            return;
+        }
+        if (running) {
+            try {
+                pauseFetching();
+            } catch (Exception e) {
+                throw new NatsException("Pause consumer " + name + " fail", e);
+            }
+            log.info("consumer {} paused", name);
+        }
+        paused = true;
+    }
+
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        if (running) {
+            try {
+                resumeFetching();
+            } catch (Exception e) {
+                throw new NatsException("Resume consumer " + name + " fail", e);
+            }
+            log.info("consumer {} resumed", name);
+        }
+        paused = false;
+    }
+
+    /**
+     * Apply the settings that can change at runtime: pool sizes, pull batch size, wait times and paused.
+     * Fields left null are kept, fields that do not apply to the listener are ignored.
+     *
+     * @param settings new settings of the listener
+     */
+    public void update(PullConsumer settings) {
+        Integer threadNumber = settings.getConsumeThreadNumber();
+        Integer threadMax = settings.getConsumeThreadMax();
+        if (consumeExecutor != null && (threadNumber != null || threadMax != null)) {
+            resize(threadNumber, threadMax);
+        }
+        if (Boolean.TRUE.equals(settings.getPaused())) {
+            pause();
+        } else if (Boolean.FALSE.equals(settings.getPaused())) {
+            resume();
+        }
+    }
+
+    private synchronized void resize(Integer threadNumber, Integer threadMax) {
+        int max = threadMax == null ? consumeExecutor.getMaximumPoolSize() : Math.max(1, threadMax);
+        int core = Math.min(max, threadNumber == null ? coreSize() : Math.max(1, threadNumber));
+        //keep core <= max at every step
+        if (max >= consumeExecutor.getMaximumPoolSize()) {
+            consumeExecutor.setMaximumPoolSize(max);
+        }
+        if (autoscaler != null) {
+            //the autoscaler owns the core size and the credits, it moves within the new bounds
+            autoscaler.setBounds(core, max);
+        } else {
+            consumeExecutor.setCorePoolSize(core);
+            resized(max * creditsPerThread);
+        }
+        if (max < consumeExecutor.getMaximumPoolSize()) {
+            consumeExecutor.setMaximumPoolSize(max);
+        }
+        log.info("consumer {} resized to {}-{} threads", name, core, max);
+    }
+
+    private int coreSize() {
+        return autoscaler != null ? autoscaler.getMinConcurrency() : consumeExecutor.getCorePoolSize();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stopped = true;
+        if (autoscaleTask != null) {
+            autoscaleTask.cancel(false);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout);
+        try {
+            stopFetching(deadline);
+        } catch (Exception e) {
+            log.error("stop fetching of consumer {} failed", name, e);
+        }
+        awaitInFlight(deadline);
+        messageDispatcher.shutdown();
+        List<Message> leftovers = new ArrayList<>(inFlight);
+        inFlight.clear();
+        leftovers.forEach(this::nakLeftover);
+        if (ackFlush != null) {
+            ackFlush.cancel(false);
+        }
+        if (ackCoalescer != null) {
+            ackCoalescer.flush();
+        }
+        try {
+            closeSubscription();
+        } catch (Exception e) {
+            log.warn("close subscription of consumer {} failed: {}", name, e.getMessage());
+        }
+        metrics.unmonitor();
+        log.info("consumer {} stopped, {} message(s) naked", name, leftovers.size());
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        //drain all consumers in parallel, the context waits for every callback
+        new ThreadFactoryImpl("NatsListenerStop_" + name + "_", true).newThread(() -> {
+            try {
+                stop();
+            } finally {
+                callback.run();
+            }
+        }).start();
+    }
+
+    /**
+     * Release a container that was never started, e.g. registered in the background after the context closed
+     */
+    void discard() {
+        stopped = true;
+        if (autoscaleTask != null) {
+            autoscaleTask.cancel(false);
+        }
+        messageDispatcher.shutdown();
+        try {
+            closeSubscription();
+        } catch (Exception e) {
+            log.warn("close subscription of consumer {} failed: {}", name, e.getMessage());
+        }
+        metrics.unmonitor();
+    }
+
+    private void awaitInFlight(long deadline) {
+        try {
+            while (!inFlight.isEmpty() && deadline - System.nanoTime() > 0) {
+                TimeUnit.MILLISECONDS.sleep(10L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return true once stopped or discarded
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return max time to wait for the messages in flight on stop, ms
+     */
+    protected long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * @param consumeExecutor  consumer pool resized by {@link #update(PullConsumer)}
+     * @param creditsPerThread messages in flight per consumer thread
+     */
+    public void setConsumeExecutor(ThreadPoolExecutor consumeExecutor, int creditsPerThread) {
+        this.consumeExecutor = consumeExecutor;
+        this.creditsPerThread = Math.max(1, creditsPerThread);
+    }
+
+    public ThreadPoolExecutor getConsumeExecutor() {
+        return consumeExecutor;
+    }
+
+    /**
+     * @param autoscaler   autoscaler of the consumer pool
+     * @param autoscaleTask periodic step of the autoscaler, cancelled on stop
+     */
+    public void setAutoscaler(ConsumerAutoscaler autoscaler, ScheduledFuture<?> autoscaleTask) {
+        this.autoscaler = autoscaler;
+        this.autoscaleTask = autoscaleTask;
+    }
+
+    public ConsumerAutoscaler getAutoscaler() {
+        return autoscaler;
+    }
+
+    /**
+     * @param metrics metrics of the listener, its monitored instances are released on stop
+     */
+    public void setMetrics(ConsumerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return messages handed to the workers and not handled yet
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
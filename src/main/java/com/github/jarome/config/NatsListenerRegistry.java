@@ -0,0 +1,84 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running listener containers by listener bean name, to pause, resume and retune them without a restart
+ */
+@Component
+public class NatsListenerRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(NatsListenerRegistry.class);
+
+    private final NatsConsumerConfig natsConsumerConfig;
+
+    public NatsListenerRegistry(NatsConsumerConfig natsConsumerConfig) {
+        this.natsConsumerConfig = natsConsumerConfig;
+    }
+
+    /**
+     * @return listener containers registered so far by listener bean name
+     */
+    public Map<String, NatsListenerContainer> getContainers() {
+        return natsConsumerConfig.getContainers();
+    }
+
+    /**
+     * @param name listener bean name
+     * @return container of the listener, null when there is none
+     */
+    public NatsListenerContainer getContainer(String name) {
+        return getContainers().get(name);
+    }
+
+    public void pause(String name) {
+        requireContainer(name).pause();
+    }
+
+    public void resume(String name) {
+        requireContainer(name).resume();
+    }
+
+    /**
+     * @param name     listener bean name
+     * @param settings new settings, null fields are kept
+     * @see NatsListenerContainer#update(PullConsumer)
+     */
+    public void update(String name, PullConsumer settings) {
+        requireContainer(name).update(settings);
+    }
+
+    /**
+     * Apply {@code nats.consumers} to the running listeners, matched by subject like on startup
+     *
+     * @param consumers current consumer settings
+     */
+    public void refresh(List<PullConsumer> consumers) {
+        if (consumers == null) {
+            return;
+        }
+        getContainers().values().forEach(container -> consumers.stream()
+                .filter(pullConsumer -> pullConsumer.getSubject() != null && pullConsumer.getSubject().equals(container.getSubject()))
+                .forEach(pullConsumer -> {
+                    try {
+                        container.update(pullConsumer);
+                    } catch (RuntimeException e) {
+                        log.error("update consumer {} failed", container.getName(), e);
+                    }
+                }));
+    }
+
+    private NatsListenerContainer requireContainer(String name) {
+        NatsListenerContainer container = getContainer(name);
+        if (container == null) {
+            throw new NatsException("no listener container " + name);
+        }
+        return container;
+    }
+}
@@ -1,11 +1,33 @@
 package com.github.jarome.config;
 
+import com.github.jarome.codec.GzipCompressor;
+import com.github.jarome.codec.JacksonCodec;
+import com.github.jarome.codec.Lz4Compressor;
+import com.github.jarome.codec.NatsCodec;
+import com.github.jarome.codec.PayloadCompressor;
+import com.github.jarome.codec.ProtobufCodec;
+import com.github.jarome.codec.ZstdCompressor;
+import com.github.jarome.common.exception.NatsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.converter.*;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * refer to org.apache.rocketmq.spring.support.RocketMQMessageConverter
@@ -14,8 +36,13 @@ import java.util.List;
 @Component
 public class NatsMessageConverter {
 
+    private static final Logger log = LoggerFactory.getLogger(NatsMessageConverter.class);
+
     private static final boolean JACKSON_PRESENT;
     private static final boolean FASTJSON_PRESENT;
+    private static final boolean PROTOBUF_PRESENT;
+    private static final boolean LZ4_PRESENT;
+    private static final boolean ZSTD_PRESENT;
 
     static {
         ClassLoader classLoader = NatsMessageConverter.class.getClassLoader();
@@ -24,9 +51,41 @@ public class NatsMessageConverter {
                         ClassUtils.isPresent("com.fasterxml.jackson.core.JsonGenerator", classLoader);
         FASTJSON_PRESENT = ClassUtils.isPresent("com.alibaba.fastjson.JSON", classLoader) &&
                 ClassUtils.isPresent("com.alibaba.fastjson.support.config.FastJsonConfig", classLoader);
+        PROTOBUF_PRESENT = ClassUtils.isPresent("com.google.protobuf.MessageLite", classLoader);
+        LZ4_PRESENT = ClassUtils.isPresent("net.jpountz.lz4.LZ4Factory", classLoader);
+        ZSTD_PRESENT = ClassUtils.isPresent("com.github.luben.zstd.ZstdCompressCtx", classLoader);
     }
 
+    private static final Object NO_CONTENT_TYPE = new Object();
+    private static final PayloadWriter STRING_WRITER = payload -> ((String) payload).getBytes(StandardCharsets.UTF_8);
+    private static final PayloadWriter BYTES_WRITER = payload -> (byte[]) payload;
+    /**
+     * Cached for payload classes jackson cannot serialize, they go through the converters
+     */
+    private static final PayloadWriter NO_WRITER = payload -> null;
+
     private final CompositeMessageConverter messageConverter;
+    private MappingJackson2MessageConverter jacksonMessageConverter;
+    /**
+     * key: content type
+     */
+    private final Map<String, NatsCodec> codecs = new ConcurrentHashMap<>();
+    /**
+     * key: content encoding
+     */
+    private final Map<String, PayloadCompressor> compressors = new ConcurrentHashMap<>();
+    /**
+     * key: payload class
+     */
+    private final Map<Class<?>, PayloadWriter> payloadWriters = new ConcurrentHashMap<>();
+    /**
+     * Converter of the composite that converted a payload class, by payload class and content type header
+     */
+    private final Map<Class<?>, Map<Object, MessageConverter>> toMessageConverters = new ConcurrentHashMap<>();
+    /**
+     * Converter of the composite that read a target class
+     */
+    private final Map<Class<?>, MessageConverter> fromMessageConverters = new ConcurrentHashMap<>();
 
     public NatsMessageConverter() {
         List<MessageConverter> messageConverters = new ArrayList<>();
@@ -35,7 +94,16 @@ public class NatsMessageConverter {
         messageConverters.add(byteArrayMessageConverter);
         messageConverters.add(new StringMessageConverter());
         if (JACKSON_PRESENT) {
-            messageConverters.add(new MappingJackson2MessageConverter());
+            jacksonMessageConverter = new MappingJackson2MessageConverter();
+            messageConverters.add(jacksonMessageConverter);
+            JacksonCodec.defaultCodecs(jacksonMessageConverter.getObjectMapper()).forEach(this::addCodec);
+        }
+        if (PROTOBUF_PRESENT) {
+            try {
+                addCodec(new ProtobufCodec(ClassUtils.forName("com.google.protobuf.MessageLite", ClassUtils.getDefaultClassLoader())));
+            } catch (ClassNotFoundException ignored) {
+                //ignore this exception
+            }
         }
         if (FASTJSON_PRESENT) {
             try {
@@ -48,9 +116,226 @@ public class NatsMessageConverter {
             }
         }
         messageConverter = new CompositeMessageConverter(messageConverters);
+        addCompressor(new GzipCompressor());
+        if (LZ4_PRESENT) {
+            addCompressor(new Lz4Compressor());
+        }
+        if (ZSTD_PRESENT) {
+            try {
+                addCompressor(new ZstdCompressor());
+            } catch (LinkageError e) {
+                log.warn("zstd-jni has no native library for this platform: {}", e.getMessage());
+            }
+        }
     }
 
     public MessageConverter getMessageConverter() {
         return messageConverter;
     }
+
+    /**
+     * Register codecs declared as beans, a bean replaces the built-in codec of the same content type
+     *
+     * @param codecs codec beans
+     */
+    @Autowired(required = false)
+    public void setCodecs(List<NatsCodec> codecs) {
+        codecs.forEach(this::addCodec);
+    }
+
+    public void addCodec(NatsCodec codec) {
+        codecs.put(codec.getContentType(), codec);
+    }
+
+    /**
+     * @param contentType content type of the codec
+     * @return the codec, null when none is registered
+     */
+    public NatsCodec getCodec(String contentType) {
+        return codecs.get(contentType);
+    }
+
+    /**
+     * Register compressors declared as beans, a bean replaces the built-in compressor of the same encoding
+     *
+     * @param compressors compressor beans
+     */
+    @Autowired(required = false)
+    public void setCompressors(List<PayloadCompressor> compressors) {
+        compressors.forEach(this::addCompressor);
+    }
+
+    public void addCompressor(PayloadCompressor compressor) {
+        compressors.put(compressor.getEncoding(), compressor);
+    }
+
+    /**
+     * @param encoding content encoding of the compressor
+     * @return the compressor, null when none is registered
+     */
+    public PayloadCompressor getCompressor(String encoding) {
+        return compressors.get(encoding);
+    }
+
+    /**
+     * Compressor of the publisher, lz4 and zstd fall back to gzip when their library is missing
+     *
+     * @param encoding content encoding, none or empty for no compression
+     * @return the compressor, null for no compression
+     */
+    public PayloadCompressor resolveCompressor(String encoding) {
+        if (encoding == null || encoding.isEmpty() || "none".equalsIgnoreCase(encoding)) {
+            return null;
+        }
+        PayloadCompressor compressor = compressors.get(encoding.toLowerCase());
+        if (compressor == null) {
+            log.warn("no compressor for {}, add lz4-java or zstd-jni to the classpath, falling back to gzip", encoding);
+            compressor = compressors.get(GzipCompressor.GZIP);
+        }
+        return compressor;
+    }
+
+    /**
+     * @param encoding content encoding of the payload
+     * @param data     compressed payload
+     * @return the payload as published
+     */
+    public byte[] decompress(String encoding, byte[] data) {
+        PayloadCompressor compressor = compressors.get(encoding);
+        if (compressor == null) {
+            throw new NatsException("no compressor registered for content encoding " + encoding);
+        }
+        return compressor.decompress(data);
+    }
+
+    /**
+     * Resolve the writer of a payload class published without content type once, so a payload is written without
+     * the Message copies of the composite converter
+     *
+     * @param payloadType payload class
+     * @param charset     charset of the text payloads
+     * @return writer of the payload bytes, null when the payload goes through {@link #toMessage}
+     */
+    public PayloadWriter getPayloadWriter(Class<?> payloadType, Charset charset) {
+        boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+        if (payloadType == String.class) {
+            return utf8 ? STRING_WRITER : payload -> ((String) payload).getBytes(charset);
+        }
+        if (payloadType == byte[].class) {
+            return BYTES_WRITER;
+        }
+        if (jacksonMessageConverter == null || !utf8) {
+            //jackson writes UTF-8, the json text of another charset is encoded by the caller
+            return null;
+        }
+        PayloadWriter writer = payloadWriters.get(payloadType);
+        if (writer == null) {
+            //jackson wins the composite for every other type it can serialize, like on the reading side
+            writer = payloadWriters.computeIfAbsent(payloadType, type -> jacksonMessageConverter.getObjectMapper().canSerialize(type)
+                    ? new JacksonPayloadWriter(jacksonMessageConverter.getObjectMapper(), type) : NO_WRITER);
+        }
+        return writer == NO_WRITER ? null : writer;
+    }
+
+    /**
+     * {@link CompositeMessageConverter#toMessage} that remembers which converter took a payload class and content type,
+     * so the next payloads go to it without asking the converters before it
+     *
+     * @param payload the payload
+     * @param headers headers of the message, the content type picks the converter
+     * @return the converted message, null when no converter can convert the payload
+     */
+    public Message<?> toMessage(Object payload, MessageHeaders headers) {
+        Object contentType = headers != null ? headers.get(MessageHeaders.CONTENT_TYPE) : null;
+        Object key = contentType != null ? contentType : NO_CONTENT_TYPE;
+        Map<Object, MessageConverter> byContentType = toMessageConverters.get(payload.getClass());
+        MessageConverter converter = byContentType != null ? byContentType.get(key) : null;
+        if (converter != null) {
+            Message<?> message = converter.toMessage(payload, headers);
+            if (message != null) {
+                return message;
+            }
+        }
+        for (MessageConverter candidate : messageConverter.getConverters()) {
+            Message<?> message = candidate.toMessage(payload, headers);
+            if (message != null) {
+                toMessageConverters.computeIfAbsent(payload.getClass(), type -> new ConcurrentHashMap<>()).put(key, candidate);
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the reader of a content type for a listener parameter type, String and byte[] always get the raw data,
+     * unknown content types fall back to the default reader
+     *
+     * @param type            listener parameter type
+     * @param methodParameter listener method parameter, conversion hint for generic types
+     * @param contentType     content type of the payload, null for the default reader
+     * @return reader of the payload bytes
+     */
+    public PayloadReader getPayloadReader(Type type, MethodParameter methodParameter, String contentType) {
+        if (contentType == null || Objects.equals(type, String.class) || Objects.equals(type, byte[].class)) {
+            return getPayloadReader(type, methodParameter);
+        }
+        NatsCodec codec = codecs.get(contentType);
+        if (codec == null) {
+            return getPayloadReader(type, methodParameter);
+        }
+        return codec.getReader(type);
+    }
+
+    /**
+     * Resolve the reader for a listener parameter type once, so a message is read without
+     * the byte[] -> String -> Message round trip and without scanning the converters
+     *
+     * @param type            listener parameter type
+     * @param methodParameter listener method parameter, conversion hint for generic types
+     * @return reader of the payload bytes
+     */
+    public PayloadReader getPayloadReader(Type type, MethodParameter methodParameter) {
+        if (Objects.equals(type, String.class)) {
+            return data -> new String(data, StandardCharsets.UTF_8);
+        }
+        if (Objects.equals(type, byte[].class)) {
+            return data -> data;
+        }
+        if (jacksonMessageConverter != null) {
+            //jackson wins the composite for every other type, use its mapper directly
+            return new JacksonPayloadReader(jacksonMessageConverter.getObjectMapper(), type);
+        }
+        if (type instanceof Class) {
+            return data -> fromMessage(MessageBuilder.withPayload(new String(data, StandardCharsets.UTF_8)).build(), (Class<?>) type, null);
+        }
+        Class<?> rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+        return data -> fromMessage(MessageBuilder.withPayload(new String(data, StandardCharsets.UTF_8)).build(), rawType, methodParameter);
+    }
+
+    /**
+     * {@link CompositeMessageConverter#fromMessage} that remembers which converter read a target class
+     */
+    private Object fromMessage(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        MessageConverter converter = fromMessageConverters.get(targetClass);
+        if (converter != null) {
+            Object result = fromMessage(converter, message, targetClass, conversionHint);
+            if (result != null) {
+                return result;
+            }
+        }
+        for (MessageConverter candidate : messageConverter.getConverters()) {
+            Object result = fromMessage(candidate, message, targetClass, conversionHint);
+            if (result != null) {
+                fromMessageConverters.put(targetClass, candidate);
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static Object fromMessage(MessageConverter converter, Message<?> message, Class<?> targetClass, Object conversionHint) {
+        return converter instanceof SmartMessageConverter
+                ? ((SmartMessageConverter) converter).fromMessage(message, targetClass, conversionHint)
+                : converter.fromMessage(message, targetClass);
+    }
 }
@@ -0,0 +1,62 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.NatsHeaders;
+import io.nats.client.Message;
+import org.springframework.core.MethodParameter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the messages of one listener. The reader of the listener type is resolved once per content type,
+ * messages without {@code Content-Type} header use the listener codec.
+ * A payload with {@code Content-Encoding} header is decompressed before it is read
+ */
+public class NatsMessageReader {
+    private final NatsMessageConverter natsMessageConverter;
+    private final Type type;
+    private final MethodParameter methodParameter;
+    private final String defaultContentType;
+    private final PayloadReader defaultReader;
+    private final Map<String, PayloadReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * @param natsMessageConverter converter holding the codecs
+     * @param type                 listener parameter type
+     * @param methodParameter      listener method parameter
+     * @param defaultContentType   codec of messages without header, null for the default JSON conversion
+     */
+    public NatsMessageReader(NatsMessageConverter natsMessageConverter, Type type, MethodParameter methodParameter, String defaultContentType) {
+        this.natsMessageConverter = natsMessageConverter;
+        this.type = type;
+        this.methodParameter = methodParameter;
+        this.defaultContentType = defaultContentType;
+        this.defaultReader = natsMessageConverter.getPayloadReader(type, methodParameter, defaultContentType);
+    }
+
+    public Object read(Message msg) throws Exception {
+        return getReader(msg).read(getData(msg));
+    }
+
+    private byte[] getData(Message msg) {
+        String encoding = msg.hasHeaders() ? msg.getHeaders().getFirst(NatsHeaders.CONTENT_ENCODING) : null;
+        return encoding == null ? msg.getData() : natsMessageConverter.decompress(encoding, msg.getData());
+    }
+
+    private PayloadReader getReader(Message msg) {
+        String contentType = msg.hasHeaders() ? msg.getHeaders().getFirst(NatsHeaders.CONTENT_TYPE) : null;
+        if (contentType == null || contentType.equals(defaultContentType)) {
+            return defaultReader;
+        }
+        PayloadReader reader = readers.get(contentType);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(contentType, c -> natsMessageConverter.getPayloadReader(type, methodParameter, c));
+        }
+        return reader;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.NatsRequestHandler;
+import com.github.jarome.annotation.NatsRequestListener;
+import com.github.jarome.common.exception.NatsException;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscribes the {@link NatsRequestHandler} beans and replies with what they return
+ */
+@Component
+public class NatsRequestHandlerRegistrar implements SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(NatsRequestHandlerRegistrar.class);
+
+    private final Connection connection;
+    private final ConfigurableApplicationContext applicationContext;
+    private final NatsMessageConverter natsMessageConverter;
+    private final List<Dispatcher> dispatchers = new ArrayList<>();
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    public NatsRequestHandlerRegistrar(Connection connection, ConfigurableApplicationContext applicationContext, NatsMessageConverter natsMessageConverter) {
+        this.connection = connection;
+        this.applicationContext = applicationContext;
+        this.natsMessageConverter = natsMessageConverter;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<String, Object> beans = applicationContext.getBeansWithAnnotation(NatsRequestHandler.class);
+        if (beans.isEmpty()) {
+            return;
+        }
+        NatsTemplate natsTemplate = applicationContext.getBean(NatsTemplate.class);
+        beans.forEach((beanName, bean) -> {
+            if (!ScopedProxyUtils.isScopedTarget(beanName)) {
+                register(beanName, bean, natsTemplate);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void register(String beanName, Object bean, NatsTemplate natsTemplate) {
+        Class<?> clazz = AopProxyUtils.ultimateTargetClass(bean);
+        if (!NatsRequestListener.class.isAssignableFrom(clazz)) {
+            throw new NatsException(clazz + " is not NatsRequestListener");
+        }
+        NatsRequestHandler annotation = clazz.getAnnotation(NatsRequestHandler.class);
+        String codec = StringUtils.hasLength(annotation.codec()) ? annotation.codec() : null;
+        ResolvableType requestType = ResolvableType.forClass(clazz).as(NatsRequestListener.class).getGeneric(0);
+        Type type = requestType.getType() instanceof Class || requestType.hasGenerics() ? requestType.getType() : Object.class;
+        NatsMessageReader reader = new NatsMessageReader(natsMessageConverter, type, null, codec);
+        NatsRequestListener<Object, Object> listener = (NatsRequestListener<Object, Object>) bean;
+        ExecutorService executor = null;
+        if (annotation.consumeThreadMax() > 0) {
+            executor = new ThreadPoolExecutor(annotation.consumeThreadMax(), annotation.consumeThreadMax(), 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, annotation.blockingQueueSize())), new ThreadFactoryImpl("NatsRequestHandler_" + beanName + "_"),
+                    new BlockingRejectedExecutionHandler());
+            executors.add(executor);
+        }
+        ExecutorService handlerExecutor = executor;
+        Dispatcher dispatcher = connection.createDispatcher(msg -> {
+            if (handlerExecutor == null) {
+                handle(beanName, msg, reader, listener, codec, natsTemplate);
+            } else {
+                handlerExecutor.execute(() -> handle(beanName, msg, reader, listener, codec, natsTemplate));
+            }
+        });
+        if (StringUtils.hasLength(annotation.queue())) {
+            dispatcher.subscribe(annotation.subject(), annotation.queue());
+        } else {
+            dispatcher.subscribe(annotation.subject());
+        }
+        dispatchers.add(dispatcher);
+        log.info("request handler {} subscribed to {}", beanName, annotation.subject());
+    }
+
+    private void handle(String beanName, Message msg, NatsMessageReader reader, NatsRequestListener<Object, Object> listener, String codec, NatsTemplate natsTemplate) {
+        if (msg.getReplyTo() == null) {
+            log.warn("request handler {} got a message of {} without reply subject", beanName, msg.getSubject());
+            return;
+        }
+        Object reply;
+        try {
+            reply = listener.onRequest(reader.read(msg));
+        } catch (Exception e) {
+            log.error("request handler {} failed on {}", beanName, msg.getSubject(), e);
+            try {
+                natsTemplate.replyError(msg, e.getClass().getName() + ": " + e.getMessage());
+            } catch (RuntimeException replyError) {
+                log.error("request handler {} cannot send the error reply", beanName, replyError);
+            }
+            return;
+        }
+        try {
+            natsTemplate.reply(msg, reply, codec);
+        } catch (RuntimeException e) {
+            log.error("request handler {} cannot send the reply", beanName, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (Dispatcher dispatcher : dispatchers) {
+            try {
+                connection.closeDispatcher(dispatcher);
+            } catch (IllegalStateException e) {
+                //the connection is closed already
+            }
+        }
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+}
@@ -1,25 +1,92 @@
 package com.github.jarome.config;
 
+import com.github.jarome.codec.NatsCodec;
+import com.github.jarome.codec.PayloadCompressor;
+import com.github.jarome.common.NatsHeaders;
 import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.metrics.PublisherMetrics;
+import io.nats.client.Connection;
 import io.nats.client.JetStream;
 import io.nats.client.PublishOptions;
 import io.nats.client.api.PublishAck;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.converter.MessageConversionException;
-import org.springframework.messaging.converter.SmartMessageConverter;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.MimeTypeUtils;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.nio.charset.Charset;
-import java.util.concurrent.CompletableFuture;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
-public class NatsTemplate {
+public class NatsTemplate implements DisposableBean {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Connection connection;
     private final JetStream jetStream;
+    /**
+     * Publishes on the connection of the subject when set, else on {@link #jetStream}
+     */
+    private NatsConnectionPool connectionPool;
     private final NatsMessageConverter natsMessageConverter;
     private String charset = "UTF-8";
+    private Charset resolvedCharset = StandardCharsets.UTF_8;
+    /**
+     * Content type of the codec used for object payloads, null keeps the message converter conversion
+     */
+    private String defaultCodec;
+    /**
+     * Read only Content-Type headers, key: content type
+     */
+    private final Map<String, Headers> codecHeaders = new ConcurrentHashMap<>();
+    /**
+     * Bounds the asynchronous publishes in flight, null for no bound
+     */
+    private PublishWindow publishWindow;
+    private int retries;
+    private final Map<String, List<BiConsumer<PublishAck, Throwable>>> publishCallbacks = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightMessages = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private PublisherMetrics publisherMetrics = PublisherMetrics.NOOP;
+    /**
+     * Compresses payloads of at least {@code compressionThreshold} bytes, null for no compression
+     */
+    private PayloadCompressor compressor;
+    private int compressionThreshold = 8192;
+    /**
+     * Read only Content-Encoding header of messages published without headers
+     */
+    private Headers encodingHeaders;
+    /**
+     * Requests over one shared reply subscription, created on the first request
+     */
+    private RequestReplyInbox requestReplyInbox;
+    private int maxPendingRequests = 10000;
+    /**
+     * key: reply type
+     */
+    private final Map<Type, NatsMessageReader> replyReaders = new ConcurrentHashMap<>();
 
     public NatsTemplate(JetStream jetStream, NatsMessageConverter natsMessageConverter) {
+        this(null, jetStream, natsMessageConverter);
+    }
+
+    /**
+     * @param connection core NATS connection of request and reply, null when they are not used
+     */
+    public NatsTemplate(Connection connection, JetStream jetStream, NatsMessageConverter natsMessageConverter) {
+        this.connection = connection;
         this.jetStream = jetStream;
         this.natsMessageConverter = natsMessageConverter;
     }
@@ -29,9 +96,93 @@ public class NatsTemplate {
     }
 
     public void setCharset(String charset) {
+        this.resolvedCharset = Charset.forName(charset);
         this.charset = charset;
     }
 
+    public String getDefaultCodec() {
+        return defaultCodec;
+    }
+
+    public void setDefaultCodec(String defaultCodec) {
+        this.defaultCodec = defaultCodec;
+    }
+
+    public PublishWindow getPublishWindow() {
+        return publishWindow;
+    }
+
+    public void setPublishWindow(PublishWindow publishWindow) {
+        this.publishWindow = publishWindow;
+    }
+
+    public PublisherMetrics getPublisherMetrics() {
+        return publisherMetrics;
+    }
+
+    public void setPublisherMetrics(PublisherMetrics publisherMetrics) {
+        this.publisherMetrics = publisherMetrics;
+    }
+
+    /**
+     * @return asynchronous publishes waiting for the ack
+     */
+    public int getInFlightMessages() {
+        return inFlightMessages.get();
+    }
+
+    /**
+     * @return payload bytes of the asynchronous publishes waiting for the ack
+     */
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public PayloadCompressor getCompressor() {
+        return compressor;
+    }
+
+    public void setCompressor(PayloadCompressor compressor) {
+        this.compressor = compressor;
+        this.encodingHeaders = compressor == null ? null : new Headers(new Headers().put(NatsHeaders.CONTENT_ENCODING, compressor.getEncoding()), true);
+    }
+
+    public NatsConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public void setConnectionPool(NatsConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    private JetStream jetStream(String subject) {
+        return connectionPool == null ? jetStream : connectionPool.jetStream(subject);
+    }
+
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    public void setMaxPendingRequests(int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
     /**
      * Send a message to the specified subject and waits for a response from
      * Jetstream. The message body <strong>will not</strong> be copied. The expected
@@ -53,11 +204,7 @@ public class NatsTemplate {
      * @return The acknowledgement of the publish
      */
     public PublishAck publish(String subject, byte[] body, PublishOptions options) {
-        try {
-            return jetStream.publish(subject, body, options);
-        } catch (Exception e) {
-            throw new NatsException("publish error:" + e.getMessage(), e);
-        }
+        return publish(subject, null, body, options);
     }
 
 
@@ -69,11 +216,7 @@ public class NatsTemplate {
      * @return The acknowledgement of the publish
      */
     public PublishAck publish(String subject, byte[] body) {
-        try {
-            return jetStream.publish(subject, body);
-        } catch (Exception e) {
-            throw new NatsException("publish error:" + e.getMessage(), e);
-        }
+        return publish(subject, null, body, null);
     }
 
     /**
@@ -85,15 +228,47 @@ public class NatsTemplate {
      * @return The acknowledgement of the publish
      */
     public PublishAck publish(String subject, Object body, String msgId) {
-        Message<?> message = MessageBuilder.withPayload(body).build();
-        byte[] bytes = convertToBytes(message);
-        return publish(subject, bytes, PublishOptions.builder().messageId(msgId).build());
+        return publish(subject, body, msgId, defaultCodec);
     }
 
     public PublishAck publish(String subject, Object body) {
-        Message<?> message = MessageBuilder.withPayload(body).build();
-        byte[] bytes = convertToBytes(message);
-        return publish(subject, bytes, PublishOptions.builder().build());
+        return publish(subject, body, null, defaultCodec);
+    }
+
+    /**
+     * push msg encoded by a codec, the content type is sent in the Content-Type header
+     *
+     * @param subject the subject to send the message to
+     * @param body    the message body
+     * @param msgId   Nats-Msg-Id, may be null
+     * @param codec   content type of the codec, null for the message converter
+     * @return The acknowledgement of the publish
+     */
+    public PublishAck publish(String subject, Object body, String msgId, String codec) {
+        PublishOptions options = msgId == null ? PublishOptions.builder().build() : PublishOptions.builder().messageId(msgId).build();
+        if (codec == null || body instanceof String || body instanceof byte[]) {
+            Message<?> message = MessageBuilder.withPayload(body).build();
+            return publish(subject, convertToBytes(message), options);
+        }
+        NatsCodec natsCodec = getCodec(codec);
+        return publish(subject, getCodecHeaders(natsCodec), encode(natsCodec, body), options);
+    }
+
+    public PublishAck publish(String subject, Headers headers, byte[] body, PublishOptions options) {
+        byte[] compressed = compress(headers, body);
+        if (compressed != null) {
+            headers = withContentEncoding(headers);
+            body = compressed;
+        }
+        long start = System.nanoTime();
+        try {
+            PublishAck ack = jetStream(subject).publish(subject, headers, body, options);
+            publisherMetrics.published(System.nanoTime() - start, true);
+            return ack;
+        } catch (Exception e) {
+            publisherMetrics.published(System.nanoTime() - start, false);
+            throw new NatsException("publish error:" + e.getMessage(), e);
+        }
     }
 
 
@@ -121,34 +296,420 @@ public class NatsTemplate {
      * @return The future
      */
     public CompletableFuture<PublishAck> publishAsync(String subject, byte[] body, PublishOptions options) {
+        return publishAsync(subject, null, body, options);
+    }
+
+
+    public CompletableFuture<PublishAck> publishAsync(String subject, byte[] body) {
+        return publishAsync(subject, null, body, null);
+    }
+
+
+    public CompletableFuture<PublishAck> publishAsync(String subject, Object body, String msgId) {
+        return publishAsync(subject, body, msgId, defaultCodec);
+    }
+
+
+    public CompletableFuture<PublishAck> publishAsync(String subject, Object body) {
+        return publishAsync(subject, body, null, defaultCodec);
+    }
+
+    /**
+     * Asynchronous {@link #publish(String, Object, String, String)}
+     */
+    public CompletableFuture<PublishAck> publishAsync(String subject, Object body, String msgId, String codec) {
+        PublishOptions options = msgId == null ? PublishOptions.builder().build() : PublishOptions.builder().messageId(msgId).build();
+        if (codec == null || body instanceof String || body instanceof byte[]) {
+            Message<?> message = MessageBuilder.withPayload(body).build();
+            return publishAsync(subject, convertToBytes(message), options);
+        }
+        NatsCodec natsCodec = getCodec(codec);
+        return publishAsync(subject, getCodecHeaders(natsCodec), encode(natsCodec, body), options);
+    }
+
+    /**
+     * Every asynchronous publish ends here. With a publish window the call waits (or fails) while the window is full,
+     * a publish that timed out is retried {@code retries} times with the same Nats-Msg-Id, and the subject callbacks
+     * run on completion. Payloads above the compression threshold are compressed first, the window counts the compressed size
+     *
+     * @param subject the subject to send the message to
+     * @param headers message headers, may be null
+     * @param body    the message body
+     * @param options publisher options, may be null
+     * @return The future
+     */
+    public CompletableFuture<PublishAck> publishAsync(String subject, Headers headers, byte[] body, PublishOptions options) {
+        if (retries > 0) {
+            options = withMessageId(options);
+        }
+        byte[] compressed = compress(headers, body);
+        if (compressed != null) {
+            headers = withContentEncoding(headers);
+            body = compressed;
+        }
+        int size = body == null ? 0 : body.length;
+        if (publishWindow != null) {
+            publishWindow.acquire(size);
+        }
+        inFlightMessages.incrementAndGet();
+        inFlightBytes.addAndGet(size);
+        long start = System.nanoTime();
+        CompletableFuture<PublishAck> future = new CompletableFuture<>();
         try {
-            return jetStream.publishAsync(subject, body, options);
+            doPublishAsync(subject, headers, body, options, retries, future);
+        } catch (RuntimeException e) {
+            releaseInFlight(size);
+            publisherMetrics.published(System.nanoTime() - start, false);
+            throw e;
+        }
+        List<BiConsumer<PublishAck, Throwable>> callbacks = publishCallbacks.get(subject);
+        return future.whenComplete((ack, e) -> {
+            releaseInFlight(size);
+            publisherMetrics.published(System.nanoTime() - start, e == null);
+            if (callbacks != null) {
+                callbacks.forEach(callback -> callback.accept(ack, e));
+            }
+        });
+    }
+
+    private void releaseInFlight(int size) {
+        inFlightMessages.decrementAndGet();
+        inFlightBytes.addAndGet(-size);
+        if (publishWindow != null) {
+            publishWindow.release(size);
+        }
+    }
+
+    private void doPublishAsync(String subject, Headers headers, byte[] body, PublishOptions options, int retriesLeft, CompletableFuture<PublishAck> future) {
+        CompletableFuture<PublishAck> attempt;
+        try {
+            attempt = jetStream(subject).publishAsync(subject, headers, body, options);
         } catch (Exception e) {
             throw new NatsException("publishAsync error:" + e.getMessage(), e);
         }
+        attempt.whenComplete((ack, e) -> {
+            if (e == null) {
+                future.complete(ack);
+            } else if (retriesLeft > 0 && isTimeout(e)) {
+                try {
+                    doPublishAsync(subject, headers, body, options, retriesLeft - 1, future);
+                } catch (Exception retryError) {
+                    future.completeExceptionally(retryError);
+                }
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
     }
 
+    /**
+     * @return the compressed body, null when it is below the threshold, already encoded or does not shrink
+     */
+    private byte[] compress(Headers headers, byte[] body) {
+        if (compressor == null || body == null || body.length < compressionThreshold
+                || (headers != null && headers.containsKey(NatsHeaders.CONTENT_ENCODING))) {
+            return null;
+        }
+        byte[] compressed = compressor.compress(body);
+        return compressed.length < body.length ? compressed : null;
+    }
 
-    public CompletableFuture<PublishAck> publishAsync(String subject, byte[] body) {
+    private Headers withContentEncoding(Headers headers) {
+        if (headers == null || headers.isEmpty()) {
+            return encodingHeaders;
+        }
+        //codec headers are shared and read only
+        return new Headers(headers).put(NatsHeaders.CONTENT_ENCODING, compressor.getEncoding());
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof TimeoutException || cause instanceof CancellationException;
+    }
+
+    /**
+     * A retried publish must keep its Nats-Msg-Id so the server drops the duplicate
+     */
+    private static PublishOptions withMessageId(PublishOptions options) {
+        if (options == null) {
+            return PublishOptions.builder().messageId(UUID.randomUUID().toString()).build();
+        }
+        if (options.getMessageId() != null) {
+            return options;
+        }
+        return PublishOptions.builder().stream(options.getStream()).streamTimeout(options.getStreamTimeout())
+                .expectedStream(options.getExpectedStream()).expectedLastMsgId(options.getExpectedLastMsgId())
+                .expectedLastSequence(options.getExpectedLastSequence()).expectedLastSubjectSequence(options.getExpectedLastSubjectSequence())
+                .messageId(UUID.randomUUID().toString()).build();
+    }
+
+    /**
+     * Run a callback whenever an asynchronous publish to the subject completes
+     *
+     * @param subject  the subject
+     * @param callback receives the ack, or the error
+     */
+    public void addPublishCallback(String subject, BiConsumer<PublishAck, Throwable> callback) {
+        publishCallbacks.computeIfAbsent(subject, s -> new CopyOnWriteArrayList<>()).add(callback);
+    }
+
+    public void removePublishCallback(String subject, BiConsumer<PublishAck, Throwable> callback) {
+        List<BiConsumer<PublishAck, Throwable>> callbacks = publishCallbacks.get(subject);
+        if (callbacks != null) {
+            callbacks.remove(callback);
+        }
+    }
+
+    public CompletableFuture<BatchPublishResult> publishAll(String subject, Collection<?> bodies) {
+        return publishAll(subject, bodies.stream(), defaultCodec);
+    }
+
+    public CompletableFuture<BatchPublishResult> publishAll(String subject, Stream<?> bodies) {
+        return publishAll(subject, bodies, defaultCodec);
+    }
+
+    /**
+     * Publish many bodies to one subject. The codec, or the payload writer of the body class, is resolved once, every
+     * message is written before waiting for any ack and the connection buffer is flushed once after the last one.
+     * A single future completes when all acks are in. A failing message does not stop the others, it is reported in
+     * {@link BatchPublishResult#getFailures()}; the batch is not atomic, the messages that were acked stay in the stream
+     *
+     * @param subject the subject to send the messages to
+     * @param bodies  the message bodies
+     * @param codec   content type of the codec, null for the message converter
+     * @return future of the aggregated acks, never completed exceptionally
+     */
+    public CompletableFuture<BatchPublishResult> publishAll(String subject, Stream<?> bodies, String codec) {
+        NatsCodec natsCodec = codec == null ? null : getCodec(codec);
+        Headers headers = natsCodec == null ? null : getCodecHeaders(natsCodec);
+        List<CompletableFuture<PublishAck>> futures = new ArrayList<>();
+        //a batch usually holds one class, its writer is kept from one body to the next
+        Class<?> writerType = null;
+        PayloadWriter payloadWriter = null;
+        Iterator<?> iterator = bodies.iterator();
+        while (iterator.hasNext()) {
+            Object body = iterator.next();
+            try {
+                if (body == null) {
+                    throw new NatsException("the message cannot be empty");
+                }
+                if (natsCodec != null && !(body instanceof String) && !(body instanceof byte[])) {
+                    futures.add(publishAsync(subject, headers, encode(natsCodec, body), null));
+                    continue;
+                }
+                if (body.getClass() != writerType) {
+                    writerType = body.getClass();
+                    payloadWriter = natsMessageConverter.getPayloadWriter(writerType, resolvedCharset);
+                }
+                futures.add(publishAsync(subject, null, write(payloadWriter, body), null));
+            } catch (Exception e) {
+                CompletableFuture<PublishAck> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                futures.add(failed);
+            }
+        }
+        flushBuffer(subject);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((v, e) -> {
+            List<PublishAck> acks = new ArrayList<>(futures.size());
+            Map<Integer, Throwable> failures = new HashMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    acks.add(futures.get(i).join());
+                } catch (CompletionException | CancellationException failure) {
+                    acks.add(null);
+                    failures.put(i, failure.getCause() == null ? failure : failure.getCause());
+                }
+            }
+            return new BatchPublishResult(acks, failures);
+        });
+    }
+
+    /**
+     * @param payloadWriter resolved writer of the body class, null for the message converters
+     */
+    private byte[] write(PayloadWriter payloadWriter, Object body) {
+        if (payloadWriter == null) {
+            return convertToBytes(MessageBuilder.withPayload(body).build());
+        }
         try {
-            return jetStream.publishAsync(subject, body);
+            return payloadWriter.write(body);
         } catch (Exception e) {
-            throw new NatsException("publishAsync error:" + e.getMessage(), e);
+            throw new NatsException("convert to bytes failed.", e);
         }
     }
 
+    /**
+     * Push the written messages to the server now instead of on the next round of the connection writer
+     */
+    private void flushBuffer(String subject) {
+        Connection target = connectionPool == null ? connection : connectionPool.getConnection(subject);
+        if (target == null) {
+            return;
+        }
+        try {
+            target.flushBuffer();
+        } catch (IOException e) {
+            //the writer sends them later or fails their futures
+        }
+    }
 
-    public CompletableFuture<PublishAck> publishAsync(String subject, Object body, String msgId) {
-        Message<?> message = MessageBuilder.withPayload(body).build();
-        byte[] bytes = convertToBytes(message);
-        return publishAsync(subject, bytes, PublishOptions.builder().messageId(msgId).build());
+    /**
+     * Core NATS request, the body is converted like a publish and the reply is read like a listener message
+     *
+     * @param subject      the subject to send the request to
+     * @param body         the request body
+     * @param responseType type of the reply
+     * @param timeout      max wait for the reply
+     * @return the reply, null for an empty reply
+     */
+    public <R> R request(String subject, Object body, Class<R> responseType, Duration timeout) {
+        try {
+            return requestAsync(subject, body, responseType, timeout).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new NatsException("request to " + subject + " timed out after " + timeout.toMillis() + "ms", cause);
+            }
+            if (cause instanceof NatsException) {
+                throw (NatsException) cause;
+            }
+            throw new NatsException("request error:" + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsException("interrupted waiting for the reply of " + subject, e);
+        }
     }
 
+    public <R> CompletableFuture<R> requestAsync(String subject, Object body, Class<R> responseType, Duration timeout) {
+        return requestAsync(subject, body, defaultCodec, responseType, timeout);
+    }
 
-    public CompletableFuture<PublishAck> publishAsync(String subject, Object body) {
-        Message<?> message = MessageBuilder.withPayload(body).build();
-        byte[] bytes = convertToBytes(message);
-        return publishAsync(subject, bytes, PublishOptions.builder().build());
+    /**
+     * Asynchronous {@link #request(String, Object, Class, Duration)}. All requests share one reply subscription,
+     * at most maxPendingRequests wait for a reply
+     *
+     * @param codec content type of the codec, null for the message converter
+     * @return the reply, completed with a {@link TimeoutException} after the timeout,
+     * or a {@link NatsException} when the handler failed or no one listens on the subject
+     */
+    public <R> CompletableFuture<R> requestAsync(String subject, Object body, String codec, Class<R> responseType, Duration timeout) {
+        NatsMessage request = toMessage(subject, body, codec);
+        NatsMessageReader reader = replyReaders.computeIfAbsent(responseType, type -> new NatsMessageReader(natsMessageConverter, type, null, null));
+        return getRequestReplyInbox().request(subject, request.getHeaders(), request.getData(), timeout).thenApply(reply -> readReply(reply, reader));
+    }
+
+    /**
+     * Reply to a request, the body is converted like a publish
+     *
+     * @param request the request
+     * @param body    the reply body, null for an empty reply
+     * @param codec   content type of the codec, null for the message converter
+     */
+    public void reply(io.nats.client.Message request, Object body, String codec) {
+        connection.publish(toMessage(request.getReplyTo(), body, codec));
+    }
+
+    /**
+     * Reply to a request with an error, the requester fails with a {@link NatsException} of the error
+     */
+    public void replyError(io.nats.client.Message request, String error) {
+        Headers headers = new Headers().put(NatsHeaders.SERVICE_ERROR, RetryingAcknowledger.headerValue(error == null ? "error" : error)).put(NatsHeaders.SERVICE_ERROR_CODE, "500");
+        connection.publish(request.getReplyTo(), headers, EMPTY);
+    }
+
+    private synchronized RequestReplyInbox getRequestReplyInbox() {
+        if (connection == null) {
+            throw new NatsException("request reply needs a NatsTemplate created with a connection");
+        }
+        if (requestReplyInbox == null) {
+            requestReplyInbox = new RequestReplyInbox(connection, maxPendingRequests);
+        }
+        return requestReplyInbox;
+    }
+
+    /**
+     * Close the reply subscription, the requests waiting for a reply fail
+     */
+    @Override
+    public void destroy() {
+        RequestReplyInbox inbox;
+        synchronized (this) {
+            inbox = requestReplyInbox;
+        }
+        if (inbox != null) {
+            //kept, later requests fail instead of opening a new subscription
+            inbox.close();
+        }
+    }
+
+    /**
+     * @return requests waiting for a reply
+     */
+    public int getPendingRequests() {
+        RequestReplyInbox inbox;
+        synchronized (this) {
+            inbox = requestReplyInbox;
+        }
+        return inbox == null ? 0 : inbox.getPendingCount();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> R readReply(io.nats.client.Message reply, NatsMessageReader reader) {
+        String error = reply.hasHeaders() ? reply.getHeaders().getFirst(NatsHeaders.SERVICE_ERROR) : null;
+        if (error != null) {
+            throw new NatsException("request failed: " + error);
+        }
+        if (reply.getData() == null || reply.getData().length == 0) {
+            return null;
+        }
+        try {
+            return (R) reader.read(reply);
+        } catch (Exception e) {
+            throw new NatsException("cannot convert reply to " + reader.getType(), e);
+        }
+    }
+
+    /**
+     * Core NATS message of a body, converted and compressed like a publish
+     */
+    private NatsMessage toMessage(String subject, Object body, String codec) {
+        Headers headers = null;
+        byte[] data;
+        if (body == null) {
+            data = EMPTY;
+        } else if (codec == null || body instanceof String || body instanceof byte[]) {
+            data = convertToBytes(MessageBuilder.withPayload(body).build());
+        } else {
+            NatsCodec natsCodec = getCodec(codec);
+            headers = getCodecHeaders(natsCodec);
+            data = encode(natsCodec, body);
+        }
+        byte[] compressed = compress(headers, data);
+        if (compressed != null) {
+            headers = withContentEncoding(headers);
+            data = compressed;
+        }
+        return NatsMessage.builder().subject(subject).headers(headers).data(data).build();
+    }
+
+    private NatsCodec getCodec(String codec) {
+        NatsCodec natsCodec = natsMessageConverter.getCodec(codec);
+        if (natsCodec == null) {
+            throw new NatsException("no codec registered for content type " + codec);
+        }
+        return natsCodec;
+    }
+
+    private Headers getCodecHeaders(NatsCodec natsCodec) {
+        return codecHeaders.computeIfAbsent(natsCodec.getContentType(), c -> new Headers(new Headers().put(NatsHeaders.CONTENT_TYPE, c), true));
+    }
+
+    private byte[] encode(NatsCodec natsCodec, Object body) {
+        try {
+            return natsCodec.encode(body);
+        } catch (Exception e) {
+            throw new NatsException("encode with " + natsCodec.getContentType() + " failed.", e);
+        }
     }
 
     /**
@@ -160,13 +721,20 @@ public class NatsTemplate {
     private byte[] convertToBytes(Message<?> message) {
         byte[] payloads;
         try {
+            if (message.getPayload() != null && !message.getHeaders().containsKey(MessageHeaders.CONTENT_TYPE)) {
+                //resolved once per payload class, the converters are only asked for the payloads it does not cover
+                PayloadWriter payloadWriter = natsMessageConverter.getPayloadWriter(message.getPayload().getClass(), resolvedCharset);
+                if (payloadWriter != null) {
+                    return payloadWriter.write(message.getPayload());
+                }
+            }
             message = this.doConvert(message.getPayload(), message.getHeaders());
             Object payloadObj = message.getPayload();
             if (null == payloadObj) {
                 throw new NatsException("the message cannot be empty");
             }
             if (payloadObj instanceof String) {
-                payloads = ((String) payloadObj).getBytes(Charset.forName(charset));
+                payloads = ((String) payloadObj).getBytes(resolvedCharset);
             } else if (payloadObj instanceof byte[]) {
                 payloads = (byte[]) message.getPayload();
             } else {
@@ -174,7 +742,7 @@ public class NatsTemplate {
                 if (null == jsonObj) {
                     throw new NatsException(String.format("empty after conversion [natsMessageConverter:%s,payloadClass:%s,payloadObj:%s]", this.natsMessageConverter.getMessageConverter().getClass(), payloadObj.getClass(), payloadObj));
                 }
-                payloads = jsonObj.getBytes(Charset.forName(charset));
+                payloads = jsonObj.getBytes(resolvedCharset);
             }
         } catch (Exception e) {
             throw new NatsException("convert to bytes failed.", e);
@@ -184,7 +752,7 @@ public class NatsTemplate {
 
 
     private Message<?> doConvert(Object payload, MessageHeaders headers) {
-        Message<?> message = this.natsMessageConverter instanceof SmartMessageConverter ? ((SmartMessageConverter) this.natsMessageConverter.getMessageConverter()).toMessage(payload, headers, null) : this.natsMessageConverter.getMessageConverter().toMessage(payload, headers);
+        Message<?> message = this.natsMessageConverter.toMessage(payload, headers);
         if (message == null) {
             String payloadType = payload.getClass().getName();
             Object contentType = headers != null ? headers.get(MessageHeaders.CONTENT_TYPE) : null;
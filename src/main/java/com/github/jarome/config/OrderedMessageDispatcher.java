@@ -0,0 +1,89 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.ExecutorType;
+import com.github.jarome.annotation.NatsMessageKeyExtractor;
+import io.nats.client.Message;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Routes messages by key to single threaded lanes, so messages with the same key are handled in order
+ * while different keys run in parallel. Every lane has its own bounded queue.
+ */
+public class OrderedMessageDispatcher implements MessageDispatcher {
+    private final ThreadPoolExecutor[] lanes;
+    private final NatsMessageKeyExtractor keyExtractor;
+    private final Consumer<Message> messageHandler;
+    /**
+     * Spreads messages without key over the lanes
+     */
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    public OrderedMessageDispatcher(String name, int laneCount, int laneQueueSize, NatsMessageKeyExtractor keyExtractor, Consumer<Message> messageHandler) {
+        this(name, laneCount, laneQueueSize, keyExtractor, messageHandler, ExecutorType.PLATFORM);
+    }
+
+    /**
+     * @param executorType {@link ExecutorType#VIRTUAL} runs every lane on a virtual thread
+     */
+    public OrderedMessageDispatcher(String name, int laneCount, int laneQueueSize, NatsMessageKeyExtractor keyExtractor, Consumer<Message> messageHandler, ExecutorType executorType) {
+        this.lanes = new ThreadPoolExecutor[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadNamePrefix = "NatsOrderedLane_" + name + "_" + i + "_";
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(1, laneQueueSize)),
+                    executorType == ExecutorType.VIRTUAL ? VirtualThreads.newThreadFactory(threadNamePrefix) : new ThreadFactoryImpl(threadNamePrefix),
+                    new BlockingRejectedExecutionHandler());
+        }
+        this.keyExtractor = keyExtractor;
+        this.messageHandler = messageHandler;
+    }
+
+    @Override
+    public void dispatch(Message msg, Runnable done) {
+        lanes[laneOf(keyExtractor.extractKey(msg))].execute(() -> {
+            try {
+                messageHandler.accept(msg);
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    private int laneOf(String key) {
+        if (key == null) {
+            return Math.floorMod(roundRobin.getAndIncrement(), lanes.length);
+        }
+        return Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @param lane lane index
+     * @return messages waiting in the lane queue
+     */
+    public int getLaneQueueSize(int lane) {
+        return lanes[lane].getQueue().size();
+    }
+
+    /**
+     * @param lane lane index
+     * @return messages handled by the lane so far
+     */
+    public long getLaneCompletedCount(int lane) {
+        return lanes[lane].getCompletedTaskCount();
+    }
+}
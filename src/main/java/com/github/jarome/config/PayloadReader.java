@@ -0,0 +1,10 @@
+package com.github.jarome.config;
+
+/**
+ * Turns the raw payload of a NATS message into the listener parameter type.
+ * Resolved once per listener, see {@link NatsMessageConverter#getPayloadReader}
+ */
+@FunctionalInterface
+public interface PayloadReader {
+    Object read(byte[] data) throws Exception;
+}
@@ -0,0 +1,10 @@
+package com.github.jarome.config;
+
+/**
+ * Turns a published payload into the NATS message data.
+ * Resolved once per payload class, see {@link NatsMessageConverter#getPayloadWriter}
+ */
+@FunctionalInterface
+public interface PayloadWriter {
+    byte[] write(Object payload) throws Exception;
+}
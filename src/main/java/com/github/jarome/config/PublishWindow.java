@@ -0,0 +1,81 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the asynchronous publishes waiting for their ack, by message count and by payload bytes.
+ * A single message larger than the byte window is let through when nothing else is in flight
+ */
+public class PublishWindow {
+    private final int maxMessages;
+    private final long maxBytes;
+    private final boolean blockWhenFull;
+    private final long maxBlockTime;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int messages;
+    private long bytes;
+
+    /**
+     * @param maxMessages   max messages in flight, 0 for no limit
+     * @param maxBytes      max payload bytes in flight, 0 for no limit
+     * @param blockWhenFull wait for room when the window is full, otherwise fail at once
+     * @param maxBlockTime  max wait for room, ms
+     */
+    public PublishWindow(int maxMessages, long maxBytes, boolean blockWhenFull, long maxBlockTime) {
+        this.maxMessages = maxMessages <= 0 ? Integer.MAX_VALUE : maxMessages;
+        this.maxBytes = maxBytes <= 0 ? Long.MAX_VALUE : maxBytes;
+        this.blockWhenFull = blockWhenFull;
+        this.maxBlockTime = maxBlockTime;
+    }
+
+    public void acquire(int size) {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(maxBlockTime);
+            while (isFull(size)) {
+                if (!blockWhenFull) {
+                    throw new NatsException("publish window full, in flight messages:" + messages + " bytes:" + bytes);
+                }
+                if (nanos <= 0L) {
+                    throw new NatsException("timed out waiting for the publish window, in flight messages:" + messages + " bytes:" + bytes);
+                }
+                nanos = released.awaitNanos(nanos);
+            }
+            messages++;
+            bytes += size;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsException("interrupted waiting for the publish window", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(int size) {
+        lock.lock();
+        try {
+            messages--;
+            bytes -= size;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFull(int size) {
+        return messages >= maxMessages || (messages > 0 && bytes + size > maxBytes);
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.jarome.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "nats.publisher")
+public class PublisherProperties {
+
+    /**
+     * Max publishAsync messages waiting for the ack, 0 for no limit
+     */
+    private int maxInFlight = 0;
+
+    /**
+     * Max publishAsync payload bytes waiting for the ack, 0 for no limit
+     */
+    private long maxInFlightBytes = 0;
+
+    /**
+     * Wait for room when the window is full, false fails at once
+     */
+    private boolean blockWhenFull = true;
+
+    /**
+     * Max wait for room in the window, ms
+     */
+    private long maxBlockTime = 30000;
+
+    /**
+     * Retries of a publishAsync that timed out, sent again with the same Nats-Msg-Id
+     */
+    private int retries = 0;
+
+    /**
+     * Payload compression none/lz4/zstd/gzip, lz4 and zstd fall back to gzip when lz4-java or zstd-jni is missing
+     */
+    private String compression = "none";
+
+    /**
+     * Min payload bytes that are compressed
+     */
+    private int compressionThreshold = 8192;
+
+    /**
+     * Max requests of NatsTemplate.request waiting for a reply
+     */
+    private int maxPendingRequests = 10000;
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public boolean isBlockWhenFull() {
+        return blockWhenFull;
+    }
+
+    public void setBlockWhenFull(boolean blockWhenFull) {
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    public long getMaxBlockTime() {
+        return maxBlockTime;
+    }
+
+    public void setMaxBlockTime(long maxBlockTime) {
+        this.maxBlockTime = maxBlockTime;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    public void setMaxPendingRequests(int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.jarome.config;
 
+import com.github.jarome.annotation.ExecutorType;
+
+import java.util.List;
+
 public class PullConsumer {
     private String subject;
     /*
@@ -47,6 +51,131 @@ public class PullConsumer {
      */
     private Long pullDelayTime;
 
+    /**
+     * 顺序消费的通道数
+     */
+    private Integer orderLanes;
+
+    /**
+     * 批量消费每批最多消息数
+     */
+    private Integer batchSize;
+
+    /**
+     * 批量消费凑批最长等待时间
+     */
+    private Long batchLingerTime;
+
+    /**
+     * push模式最多未ack的消息数
+     */
+    private Long maxAckPending;
+
+    /**
+     * push模式是否开启流控
+     */
+    private Boolean flowControl;
+
+    /**
+     * push模式服务端空闲心跳间隔
+     */
+    private Long idleHeartbeat;
+
+    /**
+     * 服务端等待ack的时间
+     */
+    private Long ackWait;
+
+    /**
+     * push模式服务端推送速率上限, bit/s
+     */
+    private Long rateLimit;
+
+    /**
+     * push模式dispatcher最多缓存的消息数
+     */
+    private Long pendingMessageLimit;
+
+    /**
+     * push模式dispatcher最多缓存的字节数
+     */
+    private Long pendingByteLimit;
+
+    /**
+     * 消费线程类型
+     */
+    private ExecutorType executor;
+
+    /**
+     * 是否合并ack
+     */
+    private Boolean coalesceAcks;
+
+    /**
+     * 合并ack的条数
+     */
+    private Integer ackBatchSize;
+
+    /**
+     * 合并ack的最长间隔
+     */
+    private Long ackFlushInterval;
+
+    /**
+     * 停止时等待在途消息的最长时间
+     */
+    private Long shutdownTimeout;
+
+    /**
+     * 停止时nak剩余消息的重投延迟
+     */
+    private Long shutdownNakDelay;
+
+    /**
+     * 暂停消费, 运行中修改后暂停或恢复
+     */
+    private Boolean paused;
+
+    /**
+     * pull模式自适应并发
+     */
+    private Boolean autoscale;
+
+    /**
+     * 自适应并发的调整间隔
+     */
+    private Long autoscaleInterval;
+
+    /**
+     * 自适应并发的处理耗时目标
+     */
+    private Long autoscaleLatencyTarget;
+
+    /**
+     * 处理失败后首次重投的延迟
+     */
+    private Long retryDelay;
+
+    /**
+     * 重投延迟的增长倍数
+     */
+    private Double retryMultiplier;
+
+    /**
+     * 重投延迟的上限
+     */
+    private Long retryMaxDelay;
+
+    /**
+     * 各次重投的延迟
+     */
+    private List<Long> retryBackoff;
+
+    /**
+     * 死信subject
+     */
+    private String deadLetterSubject;
+
     public Boolean getAutoAck() {
         return autoAck;
     }
@@ -126,4 +255,204 @@ public class PullConsumer {
     public void setPullDelayTime(Long pullDelayTime) {
         this.pullDelayTime = pullDelayTime;
     }
+
+    public Integer getOrderLanes() {
+        return orderLanes;
+    }
+
+    public void setOrderLanes(Integer orderLanes) {
+        this.orderLanes = orderLanes;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Long getBatchLingerTime() {
+        return batchLingerTime;
+    }
+
+    public void setBatchLingerTime(Long batchLingerTime) {
+        this.batchLingerTime = batchLingerTime;
+    }
+
+    public Long getMaxAckPending() {
+        return maxAckPending;
+    }
+
+    public void setMaxAckPending(Long maxAckPending) {
+        this.maxAckPending = maxAckPending;
+    }
+
+    public Boolean getFlowControl() {
+        return flowControl;
+    }
+
+    public void setFlowControl(Boolean flowControl) {
+        this.flowControl = flowControl;
+    }
+
+    public ExecutorType getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ExecutorType executor) {
+        this.executor = executor;
+    }
+
+    public Boolean getCoalesceAcks() {
+        return coalesceAcks;
+    }
+
+    public void setCoalesceAcks(Boolean coalesceAcks) {
+        this.coalesceAcks = coalesceAcks;
+    }
+
+    public Integer getAckBatchSize() {
+        return ackBatchSize;
+    }
+
+    public void setAckBatchSize(Integer ackBatchSize) {
+        this.ackBatchSize = ackBatchSize;
+    }
+
+    public Long getAckFlushInterval() {
+        return ackFlushInterval;
+    }
+
+    public void setAckFlushInterval(Long ackFlushInterval) {
+        this.ackFlushInterval = ackFlushInterval;
+    }
+
+    public Long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(Long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public Long getShutdownNakDelay() {
+        return shutdownNakDelay;
+    }
+
+    public void setShutdownNakDelay(Long shutdownNakDelay) {
+        this.shutdownNakDelay = shutdownNakDelay;
+    }
+
+    public Boolean getAutoscale() {
+        return autoscale;
+    }
+
+    public void setAutoscale(Boolean autoscale) {
+        this.autoscale = autoscale;
+    }
+
+    public Long getAutoscaleInterval() {
+        return autoscaleInterval;
+    }
+
+    public void setAutoscaleInterval(Long autoscaleInterval) {
+        this.autoscaleInterval = autoscaleInterval;
+    }
+
+    public Long getAutoscaleLatencyTarget() {
+        return autoscaleLatencyTarget;
+    }
+
+    public void setAutoscaleLatencyTarget(Long autoscaleLatencyTarget) {
+        this.autoscaleLatencyTarget = autoscaleLatencyTarget;
+    }
+
+    public Boolean getPaused() {
+        return paused;
+    }
+
+    public void setPaused(Boolean paused) {
+        this.paused = paused;
+    }
+
+    public Long getIdleHeartbeat() {
+        return idleHeartbeat;
+    }
+
+    public void setIdleHeartbeat(Long idleHeartbeat) {
+        this.idleHeartbeat = idleHeartbeat;
+    }
+
+    public Long getAckWait() {
+        return ackWait;
+    }
+
+    public void setAckWait(Long ackWait) {
+        this.ackWait = ackWait;
+    }
+
+    public Long getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(Long rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public Long getPendingMessageLimit() {
+        return pendingMessageLimit;
+    }
+
+    public void setPendingMessageLimit(Long pendingMessageLimit) {
+        this.pendingMessageLimit = pendingMessageLimit;
+    }
+
+    public Long getPendingByteLimit() {
+        return pendingByteLimit;
+    }
+
+    public void setPendingByteLimit(Long pendingByteLimit) {
+        this.pendingByteLimit = pendingByteLimit;
+    }
+
+    public Long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public Double getRetryMultiplier() {
+        return retryMultiplier;
+    }
+
+    public void setRetryMultiplier(Double retryMultiplier) {
+        this.retryMultiplier = retryMultiplier;
+    }
+
+    public Long getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public void setRetryMaxDelay(Long retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    public List<Long> getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(List<Long> retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public String getDeadLetterSubject() {
+        return deadLetterSubject;
+    }
+
+    public void setDeadLetterSubject(String deadLetterSubject) {
+        this.deadLetterSubject = deadLetterSubject;
+    }
 }
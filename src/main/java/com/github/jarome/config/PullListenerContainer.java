@@ -0,0 +1,107 @@
+package com.github.jarome.config;
+
+import io.nats.client.JetStreamSubscription;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Container of a pull consumer, fetching runs on a {@link PullMessageService} thread
+ */
+public class PullListenerContainer extends NatsListenerContainer {
+    private final JetStreamSubscription subscription;
+    private final String subject;
+    private final PullMessageService pullMessageService;
+    private final ThreadFactory pullThreadFactory;
+    private Thread pullThread;
+
+    /**
+     * @param subscription              bound pull subscription
+     * @param subject                   filter subject
+     * @param pullMessageServiceFactory creates the pull loop around the dispatch of the container
+     * @param pullThreadFactory         factory of the pull thread
+     */
+    public PullListenerContainer(String name, MessageDispatcher messageDispatcher, AckCoalescer ackCoalescer,
+                                 ScheduledExecutorService scheduler, long ackFlushInterval, long shutdownTimeout, long shutdownNakDelay,
+                                 JetStreamSubscription subscription, String subject, PullMessageServiceFactory pullMessageServiceFactory, ThreadFactory pullThreadFactory) {
+        super(name, messageDispatcher, ackCoalescer, scheduler, ackFlushInterval, shutdownTimeout, shutdownNakDelay);
+        this.subscription = subscription;
+        this.subject = subject;
+        this.pullMessageService = pullMessageServiceFactory.create(this::dispatch);
+        this.pullMessageService.setLeftoverHandler(this::nakLeftover);
+        this.pullThreadFactory = pullThreadFactory;
+    }
+
+    @Override
+    protected void startFetching() {
+        if (isPaused()) {
+            pullMessageService.pause();
+        }
+        pullThread = pullThreadFactory.newThread(pullMessageService);
+        pullThread.start();
+    }
+
+    @Override
+    protected void stopFetching(long deadline) throws InterruptedException {
+        pullMessageService.stop();
+        //the loop returns once its outstanding pull requests expired
+        pullThread.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    }
+
+    @Override
+    protected void closeSubscription() {
+        subscription.unsubscribe();
+    }
+
+    @Override
+    protected void pauseFetching() {
+        pullMessageService.pause();
+    }
+
+    @Override
+    protected void resumeFetching() {
+        pullMessageService.resume();
+    }
+
+    @Override
+    protected void resized(int capacity) {
+        pullMessageService.setCapacity(capacity);
+    }
+
+    @Override
+    public void update(PullConsumer settings) {
+        super.update(settings);
+        if (settings.getPullBatchSize() != null) {
+            pullMessageService.setPullBatchSize(settings.getPullBatchSize());
+        }
+        if (settings.getMaxWaitTime() != null) {
+            pullMessageService.setMaxWaitTime(settings.getMaxWaitTime());
+        }
+        if (settings.getPullInterval() != null) {
+            pullMessageService.setPullInterval(settings.getPullInterval());
+        }
+    }
+
+    @Override
+    public JetStreamSubscription getSubscription() {
+        return subscription;
+    }
+
+    @Override
+    public String getSubject() {
+        return subject;
+    }
+
+    public PullMessageService getPullMessageService() {
+        return pullMessageService;
+    }
+
+    /**
+     * Creates the pull loop of a container
+     */
+    @FunctionalInterface
+    public interface PullMessageServiceFactory {
+        PullMessageService create(MessageDispatcher dispatcher);
+    }
+}
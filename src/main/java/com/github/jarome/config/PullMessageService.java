@@ -0,0 +1,391 @@
+package com.github.jarome.config;
+
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Credit based pull loop.
+ * <p>
+ * Every free worker slot is a credit. Credits are reserved by outstanding pull requests and handed back
+ * when a handler finishes or when a pull request expires without being filled,
+ * so new pull requests are issued as soon as capacity frees up instead of after a fixed sleep.
+ */
+public class PullMessageService implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(PullMessageService.class);
+
+    private final JetStreamSubscription subscription;
+    private final MessageDispatcher dispatcher;
+    private final ConsumerMetrics metrics;
+    private final ResizableSemaphore credits;
+    private volatile int maxPullBatchSize;
+    private volatile int pullBatchSize;
+    private int capacity;
+    private volatile long maxWaitTime;
+    private volatile long pullInterval;
+    private final long pullDelayTime;
+    /**
+     * Pull requests sent to the server and not yet filled or expired, oldest first. Only touched by the pull thread.
+     */
+    private final Deque<PendingPull> pendingPulls = new ArrayDeque<>();
+    private volatile boolean running = true;
+    private volatile boolean paused;
+    private final Object pauseMonitor = new Object();
+    private Consumer<Message> leftoverHandler = Message::nak;
+
+    /**
+     * @param subscription   bound pull subscription
+     * @param capacity       max messages in flight (requested, queued or being handled)
+     * @param pullBatchSize  max messages asked for by a single pull request
+     * @param maxWaitTime    pull request expiry, ms
+     * @param pullInterval   back-off after a failed pull, ms
+     * @param pullDelayTime  delay before the first pull, ms
+     * @param dispatcher     hands every message to the workers
+     * @param metrics        pull metrics
+     */
+    public PullMessageService(JetStreamSubscription subscription, int capacity, int pullBatchSize, long maxWaitTime,
+                              long pullInterval, long pullDelayTime, MessageDispatcher dispatcher, ConsumerMetrics metrics) {
+        this(subscription, new ResizableSemaphore(Math.max(1, capacity)), Math.max(1, capacity), pullBatchSize, maxWaitTime, pullInterval, pullDelayTime, dispatcher, metrics);
+    }
+
+    /**
+     * Demand driven pull loop: it starts without credits and pulls only what {@link #addCredits(int)} grants,
+     * the dispatcher decides whether a handled message hands its credit back
+     *
+     * @param subscription  bound pull subscription
+     * @param pullBatchSize max messages asked for by a single pull request
+     * @param maxWaitTime   pull request expiry, ms
+     * @param pullInterval  back-off after a failed pull, ms
+     * @param dispatcher    hands every message to the subscriber
+     * @param metrics       pull metrics
+     */
+    public PullMessageService(JetStreamSubscription subscription, int pullBatchSize, long maxWaitTime, long pullInterval,
+                              MessageDispatcher dispatcher, ConsumerMetrics metrics) {
+        this(subscription, new ResizableSemaphore(0), 0, pullBatchSize, maxWaitTime, pullInterval, 0L, dispatcher, metrics);
+    }
+
+    private PullMessageService(JetStreamSubscription subscription, ResizableSemaphore credits, int capacity, int pullBatchSize, long maxWaitTime,
+                               long pullInterval, long pullDelayTime, MessageDispatcher dispatcher, ConsumerMetrics metrics) {
+        this.subscription = subscription;
+        this.credits = credits;
+        this.capacity = capacity;
+        this.maxPullBatchSize = Math.max(1, pullBatchSize);
+        this.pullBatchSize = capacity > 0 ? Math.min(maxPullBatchSize, capacity) : maxPullBatchSize;
+        this.maxWaitTime = Math.max(1L, maxWaitTime);
+        this.pullInterval = Math.max(1L, pullInterval);
+        this.pullDelayTime = pullDelayTime;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (pullDelayTime > 0L) {
+                TimeUnit.MILLISECONDS.sleep(pullDelayTime);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                pullOnce();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                //Exceptions cannot be thrown or the thread will interrupt
+                log.error("Pull Message Service Run Method exception", e);
+                backOff();
+            }
+        }
+        drainPulls();
+    }
+
+    /**
+     * Messages of the pull requests still outstanding arrive after the loop stopped, hand them to the
+     * leftover handler until the requests expired
+     */
+    private void drainPulls() {
+        PendingPull last = pendingPulls.peekLast();
+        int reserved = 0;
+        PendingPull pull;
+        while ((pull = pendingPulls.pollFirst()) != null) {
+            reserved += pull.remaining;
+        }
+        if (last == null) {
+            return;
+        }
+        try {
+            long waitNanos;
+            while ((waitNanos = last.expiresAt - System.nanoTime()) > 0) {
+                Message msg = subscription.nextMessage(Duration.ofNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), waitNanos)));
+                if (msg != null) {
+                    leftoverHandler.accept(msg);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Pull Message Service drain exception", e);
+        } finally {
+            //the leftovers are not dispatched, so the credits of a restarted loop are complete again
+            credits.release(reserved);
+        }
+    }
+
+    private void pullOnce() throws InterruptedException {
+        expirePulls(System.nanoTime());
+        if (paused) {
+            //no new pull requests, the messages of the outstanding ones are still handled
+            if (pendingPulls.isEmpty()) {
+                awaitResume();
+                return;
+            }
+        } else if (!requestMessages()) {
+            return;
+        }
+        receive();
+    }
+
+    /**
+     * Ask for as many messages as there are credits
+     *
+     * @return false when no credit was handed back within maxWaitTime
+     */
+    private boolean requestMessages() throws InterruptedException {
+        if (pendingPulls.isEmpty()) {
+            //nothing outstanding, so no message can arrive: wait for a handler to hand a credit back
+            if (!credits.tryAcquire(maxWaitTime, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            if (paused) {
+                credits.release();
+                return false;
+            }
+            int batchSize = pullBatchSize;
+            int size = 1;
+            while (size < batchSize && credits.tryAcquire()) {
+                size++;
+            }
+            pull(size);
+        }
+        int batchSize = pullBatchSize;
+        while (!paused && credits.tryAcquire(batchSize)) {
+            pull(batchSize);
+        }
+        return true;
+    }
+
+    private void receive() throws InterruptedException {
+        long waitNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), pendingPulls.peekFirst().expiresAt - System.nanoTime());
+        long waitStart = System.nanoTime();
+        Message msg = subscription.nextMessage(Duration.ofNanos(waitNanos));
+        metrics.pullWaited(System.nanoTime() - waitStart);
+        if (msg == null) {
+            return;
+        }
+        PendingPull head = pendingPulls.peekFirst();
+        if (head != null && head.expiresAt - System.nanoTime() > 0) {
+            if (--head.remaining == 0) {
+                pendingPulls.pollFirst();
+            }
+        } else {
+            //delivered for a request we already gave up on, it still needs a credit:
+            //the expired requests hand theirs back first, else a loop with every credit reserved waits forever
+            expirePulls(System.nanoTime());
+            credits.acquire();
+        }
+        dispatch(msg);
+    }
+
+    private void awaitResume() throws InterruptedException {
+        synchronized (pauseMonitor) {
+            if (paused && running) {
+                pauseMonitor.wait(maxWaitTime);
+            }
+        }
+    }
+
+    private void dispatch(Message msg) {
+        try {
+            dispatcher.dispatch(msg, credits::release);
+        } catch (RuntimeException e) {
+            credits.release();
+            throw e;
+        }
+    }
+
+    private void pull(int size) {
+        try {
+            subscription.pullExpiresIn(size, Duration.ofMillis(maxWaitTime));
+        } catch (RuntimeException e) {
+            credits.release(size);
+            throw e;
+        }
+        pendingPulls.addLast(new PendingPull(size, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitTime)));
+        metrics.pullRequested(size);
+    }
+
+    private void expirePulls(long now) {
+        PendingPull head;
+        while ((head = pendingPulls.peekFirst()) != null && head.expiresAt - now <= 0) {
+            pendingPulls.pollFirst();
+            credits.release(head.remaining);
+            if (head.remaining == head.size) {
+                metrics.pullEmpty();
+            }
+        }
+    }
+
+    private void backOff() {
+        PendingPull pull;
+        while ((pull = pendingPulls.pollFirst()) != null) {
+            credits.release(pull.remaining);
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(pullInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Allow {@code count} more messages to be pulled
+     *
+     * @param count credits to grant
+     */
+    public void addCredits(int count) {
+        if (count > 0) {
+            credits.release(Math.min(count, Integer.MAX_VALUE - credits.availablePermits()));
+        }
+    }
+
+    /**
+     * Resize the messages in flight of a capacity bounded loop, the pull batch size follows up to its configured maximum.
+     * A smaller capacity takes effect as the messages in flight are handled.
+     *
+     * @param capacity max messages in flight
+     */
+    public synchronized void setCapacity(int capacity) {
+        int target = Math.max(1, capacity);
+        int delta = target - this.capacity;
+        this.capacity = target;
+        pullBatchSize = Math.min(maxPullBatchSize, target);
+        if (delta > 0) {
+            credits.release(delta);
+        } else if (delta < 0) {
+            credits.reducePermits(-delta);
+        }
+    }
+
+    /**
+     * @param pullBatchSize max messages asked for by a single pull request
+     */
+    public synchronized void setPullBatchSize(int pullBatchSize) {
+        maxPullBatchSize = Math.max(1, pullBatchSize);
+        this.pullBatchSize = capacity > 0 ? Math.min(maxPullBatchSize, capacity) : maxPullBatchSize;
+    }
+
+    /**
+     * @param maxWaitTime pull request expiry of the next pull requests, ms
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        this.maxWaitTime = Math.max(1L, maxWaitTime);
+    }
+
+    /**
+     * @param pullInterval back-off after a failed pull, ms
+     */
+    public void setPullInterval(long pullInterval) {
+        this.pullInterval = Math.max(1L, pullInterval);
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public long getPullInterval() {
+        return pullInterval;
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public int getPullBatchSize() {
+        return pullBatchSize;
+    }
+
+    /**
+     * @param leftoverHandler gets the messages that arrive after {@link #stop()}, naks them by default
+     */
+    public void setLeftoverHandler(Consumer<Message> leftoverHandler) {
+        this.leftoverHandler = leftoverHandler;
+    }
+
+    /**
+     * Stop sending pull requests, the messages of the outstanding ones are still dispatched
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+        synchronized (pauseMonitor) {
+            pauseMonitor.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Stop pulling, the loop returns once the outstanding pull requests expired
+     */
+    public void stop() {
+        running = false;
+        synchronized (pauseMonitor) {
+            pauseMonitor.notifyAll();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+        private ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    private static final class PendingPull {
+        private final int size;
+        private int remaining;
+        private final long expiresAt;
+
+        private PendingPull(int size, long expiresAt) {
+            this.size = size;
+            this.remaining = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.jarome.config;
+
+import io.nats.client.Connection;
+import io.nats.client.Consumer;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.PushSubscribeOptions;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Container of a push consumer, the subscription is made on start and drained on stop
+ */
+public class PushListenerContainer extends NatsListenerContainer {
+    private static final Runnable NO_OP = () -> {
+    };
+    private final Connection connection;
+    private final String subject;
+    private final PushSubscribeOptions subscribeOptions;
+    private long pendingMessageLimit;
+    private long pendingByteLimit;
+    private volatile Dispatcher dispatcher;
+    private volatile JetStreamSubscription subscription;
+
+    /**
+     * @param connection       connection of the dispatcher
+     * @param subject          filter subject
+     * @param subscribeOptions options binding the consumer
+     */
+    public PushListenerContainer(String name, MessageDispatcher messageDispatcher, AckCoalescer ackCoalescer,
+                                 ScheduledExecutorService scheduler, long ackFlushInterval, long shutdownTimeout, long shutdownNakDelay,
+                                 Connection connection, String subject, PushSubscribeOptions subscribeOptions) {
+        super(name, messageDispatcher, ackCoalescer, scheduler, ackFlushInterval, shutdownTimeout, shutdownNakDelay);
+        this.connection = connection;
+        this.subject = subject;
+        this.subscribeOptions = subscribeOptions;
+    }
+
+    @Override
+    protected void startFetching() throws Exception {
+        if (!isPaused()) {
+            subscribe();
+        }
+    }
+
+    private void subscribe() throws Exception {
+        JetStream js = connection.jetStream();
+        dispatcher = connection.createDispatcher();
+        if (pendingMessageLimit > 0 || pendingByteLimit > 0) {
+            dispatcher.setPendingLimits(pendingMessageLimit > 0 ? pendingMessageLimit : Consumer.DEFAULT_MAX_MESSAGES,
+                    pendingByteLimit > 0 ? pendingByteLimit : Consumer.DEFAULT_MAX_BYTES);
+        }
+        subscription = js.subscribe(subject, dispatcher, msg -> {
+            if (isRunning()) {
+                dispatch(msg, NO_OP);
+            } else {
+                //stopping: what the dispatcher still holds goes back to the server
+                nakLeftover(msg);
+            }
+        }, false, subscribeOptions);
+    }
+
+    /**
+     * Drain the dedicated dispatcher: the interest stops and the messages it still holds are handled as usual
+     */
+    @Override
+    protected void pauseFetching() throws Exception {
+        long timeout = Math.max(1L, getShutdownTimeout());
+        try {
+            dispatcher.drain(Duration.ofMillis(timeout)).get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            connection.closeDispatcher(dispatcher);
+        }
+    }
+
+    @Override
+    protected void resumeFetching() throws Exception {
+        subscribe();
+    }
+
+    @Override
+    protected void stopFetching(long deadline) throws Exception {
+        if (dispatcher == null || !dispatcher.isActive()) {
+            //paused
+            return;
+        }
+        //stop the interest and empty the dispatcher, its messages are naked
+        long timeout = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        try {
+            dispatcher.drain(Duration.ofMillis(timeout)).get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            connection.closeDispatcher(dispatcher);
+        }
+    }
+
+    @Override
+    protected void closeSubscription() {
+        if (dispatcher != null && dispatcher.isActive()) {
+            connection.closeDispatcher(dispatcher);
+        }
+    }
+
+    /**
+     * Bound the messages the dedicated dispatcher buffers, beyond them the client drops messages as a slow consumer
+     *
+     * @param pendingMessageLimit max buffered messages, 0 for the client default
+     * @param pendingByteLimit    max buffered bytes, 0 for the client default
+     */
+    public void setPendingLimits(long pendingMessageLimit, long pendingByteLimit) {
+        this.pendingMessageLimit = pendingMessageLimit;
+        this.pendingByteLimit = pendingByteLimit;
+    }
+
+    /**
+     * @return messages buffered by the dispatcher and not handed to the workers yet
+     */
+    public long getPendingMessageCount() {
+        Dispatcher current = dispatcher;
+        return current == null || !current.isActive() ? 0L : current.getPendingMessageCount();
+    }
+
+    @Override
+    public JetStreamSubscription getSubscription() {
+        return subscription;
+    }
+
+    @Override
+    public String getSubject() {
+        return subject;
+    }
+}
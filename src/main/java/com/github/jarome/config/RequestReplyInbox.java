@@ -0,0 +1,127 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.support.Status;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Core NATS requests over one wildcard reply subscription: every request gets a token under the inbox prefix,
+ * the reply completes the future registered for the token. At most {@code maxPending} requests wait for a reply,
+ * a request beyond that fails at once instead of blocking the caller.
+ */
+public class RequestReplyInbox implements AutoCloseable {
+    private final Connection connection;
+    private final Semaphore permits;
+    private final int maxPending;
+    private final Map<String, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+    private String prefix;
+    private Dispatcher dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * @param connection core NATS connection
+     * @param maxPending max requests waiting for a reply
+     */
+    public RequestReplyInbox(Connection connection, int maxPending) {
+        this.connection = connection;
+        this.maxPending = Math.max(1, maxPending);
+        this.permits = new Semaphore(this.maxPending);
+    }
+
+    /**
+     * @param subject the subject to send the request to
+     * @param headers request headers, may be null
+     * @param body    request body
+     * @param timeout max wait for the reply
+     * @return the reply, completed with a {@link java.util.concurrent.TimeoutException} after the timeout, or a
+     * {@link NatsException} when no one listens on the subject, {@code maxPending} requests are waiting or the inbox is closed
+     */
+    public CompletableFuture<Message> request(String subject, Headers headers, byte[] body, Duration timeout) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new NatsException("request reply inbox closed"));
+        }
+        //never block the caller, which may be an event loop
+        if (!permits.tryAcquire()) {
+            return CompletableFuture.failedFuture(new NatsException("request to " + subject + " failed: " + maxPending + " requests are waiting for a reply"));
+        }
+        String token = Long.toString(tokens.incrementAndGet(), 36);
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        pending.put(token, future);
+        try {
+            connection.publish(subject, getPrefix() + token, headers, body);
+        } catch (RuntimeException e) {
+            pending.remove(token);
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        if (closed) {
+            //close ran before the request was registered
+            future.completeExceptionally(new NatsException("request reply inbox closed"));
+        }
+        return future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((reply, e) -> {
+            pending.remove(token);
+            permits.release();
+        });
+    }
+
+    private synchronized String getPrefix() {
+        if (closed) {
+            throw new NatsException("request reply inbox closed");
+        }
+        if (prefix == null) {
+            String inbox = connection.createInbox() + ".";
+            dispatcher = connection.createDispatcher(this::replied);
+            dispatcher.subscribe(inbox + "*");
+            prefix = inbox;
+        }
+        return prefix;
+    }
+
+    private void replied(Message msg) {
+        String subject = msg.getSubject();
+        CompletableFuture<Message> future = pending.get(subject.substring(subject.lastIndexOf('.') + 1));
+        if (future == null) {
+            //timed out already
+            return;
+        }
+        if (msg.isStatusMessage() && msg.getStatus().getCode() == Status.NO_RESPONDERS_CODE) {
+            future.completeExceptionally(new NatsException("no responders on the request subject"));
+        } else {
+            future.complete(msg);
+        }
+    }
+
+    /**
+     * @return requests waiting for a reply
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (dispatcher != null) {
+            connection.closeDispatcher(dispatcher);
+            dispatcher = null;
+            prefix = null;
+        }
+        pending.values().forEach(future -> future.completeExceptionally(new NatsException("request reply inbox closed")));
+    }
+}
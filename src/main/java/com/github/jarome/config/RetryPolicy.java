@@ -0,0 +1,65 @@
+package com.github.jarome.config;
+
+import java.time.Duration;
+
+/**
+ * Redelivery delay of a failed message by its delivery attempt: the backoff tiers when configured (the last tier
+ * repeats), otherwise {@code initialDelay * multiplier^(attempt - 1)} capped at {@code maxDelay}
+ */
+public class RetryPolicy {
+    private final long initialDelay;
+    private final double multiplier;
+    private final long maxDelay;
+    private final long[] backoff;
+    private final long maxDeliver;
+
+    /**
+     * @param initialDelay delay after the first failed attempt, ms, 0 for an immediate redelivery
+     * @param multiplier   growth of the delay per attempt
+     * @param maxDelay     upper bound of the delay, ms
+     * @param backoff      delay per attempt, ms, takes precedence over the exponential delay when not empty
+     * @param maxDeliver   max delivery attempts of the consumer, less than 1 for unlimited
+     */
+    public RetryPolicy(long initialDelay, double multiplier, long maxDelay, long[] backoff, long maxDeliver) {
+        this.initialDelay = Math.max(0L, initialDelay);
+        this.multiplier = Math.max(1.0, multiplier);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        this.backoff = backoff == null ? new long[0] : backoff.clone();
+        this.maxDeliver = maxDeliver;
+    }
+
+    /**
+     * @param attempt delivery count of the failed message, starting at 1
+     * @return redelivery delay, zero for an immediate redelivery
+     */
+    public Duration getDelay(long attempt) {
+        int retry = (int) Math.max(0L, Math.min(attempt - 1, Integer.MAX_VALUE));
+        if (backoff.length > 0) {
+            return Duration.ofMillis(Math.max(0L, backoff[Math.min(retry, backoff.length - 1)]));
+        }
+        if (initialDelay == 0L) {
+            return Duration.ZERO;
+        }
+        double delay = initialDelay * Math.pow(multiplier, retry);
+        return Duration.ofMillis(delay >= maxDelay ? maxDelay : (long) delay);
+    }
+
+    /**
+     * @param attempt delivery count of the failed message
+     * @return true when the server will not deliver the message again
+     */
+    public boolean isLastAttempt(long attempt) {
+        return maxDeliver > 0 && attempt >= maxDeliver;
+    }
+
+    /**
+     * @return true when every failed message is redelivered at once, as without a policy
+     */
+    public boolean isImmediate() {
+        return backoff.length == 0 && initialDelay == 0L;
+    }
+
+    public long getMaxDeliver() {
+        return maxDeliver;
+    }
+}
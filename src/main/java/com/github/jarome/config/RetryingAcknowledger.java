@@ -0,0 +1,131 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.NatsHeaders;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.Message;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.Headers;
+import io.nats.client.support.NatsJetStreamConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Naks failed messages with the delay of the {@link RetryPolicy}, so a failing message waits on the server
+ * instead of coming straight back to the workers. A message failing its last delivery attempt is published to the
+ * dead letter subject with the failure headers and acked; when that publish fails or is dropped as a duplicate it is
+ * naked like the others.
+ */
+public class RetryingAcknowledger implements MessageAcknowledger {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryingAcknowledger.class);
+    private static final int MAX_HEADER_VALUE_LENGTH = 256;
+
+    private final MessageAcknowledger delegate;
+    private final RetryPolicy retryPolicy;
+    private final String deadLetterSubject;
+    private final NatsTemplate natsTemplate;
+    private final String consumerName;
+    private final ConsumerMetrics metrics;
+
+    /**
+     * @param delegate          acks and naks of the consumer
+     * @param retryPolicy       redelivery delays
+     * @param deadLetterSubject subject of the messages that failed their last attempt, null for none
+     * @param natsTemplate      publishes the dead letters, a stream must cover the subject
+     * @param consumerName      durable name, sent in the failure headers
+     * @param metrics           dead letter count
+     */
+    public RetryingAcknowledger(MessageAcknowledger delegate, RetryPolicy retryPolicy, String deadLetterSubject,
+                                NatsTemplate natsTemplate, String consumerName, ConsumerMetrics metrics) {
+        this.delegate = delegate;
+        this.retryPolicy = retryPolicy;
+        this.deadLetterSubject = deadLetterSubject;
+        this.natsTemplate = natsTemplate;
+        this.consumerName = consumerName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void ack(Message msg) {
+        delegate.ack(msg);
+    }
+
+    @Override
+    public void nak(Message msg) {
+        nak(msg, null);
+    }
+
+    @Override
+    public void nak(Message msg, Throwable cause) {
+        long attempt = msg.isJetStream() ? msg.metaData().deliveredCount() : 1L;
+        if (deadLetterSubject != null && retryPolicy.isLastAttempt(attempt) && deadLetter(msg, cause, attempt)) {
+            delegate.ack(msg);
+            metrics.deadLettered();
+            return;
+        }
+        Duration delay = retryPolicy.getDelay(attempt);
+        if (delay.isZero()) {
+            delegate.nak(msg);
+        } else {
+            delegate.nakWithDelay(msg, delay);
+        }
+    }
+
+    @Override
+    public void nakWithDelay(Message msg, Duration delay) {
+        delegate.nakWithDelay(msg, delay);
+    }
+
+    private boolean deadLetter(Message msg, Throwable cause, long attempt) {
+        Headers headers = new Headers();
+        if (msg.hasHeaders()) {
+            msg.getHeaders().forEach((key, values) -> {
+                //expectations and the dedup id of the producer are about the original stream,
+                //the dead letter stream would drop a copy with an id it saw in its duplicate window
+                if (!key.startsWith("Nats-Expected") && !key.equals(NatsJetStreamConstants.MSG_ID_HDR)) {
+                    headers.put(key, values);
+                }
+            });
+        }
+        headers.put(NatsHeaders.DLQ_ORIGINAL_SUBJECT, msg.getSubject());
+        headers.put(NatsHeaders.DLQ_DELIVERY_COUNT, String.valueOf(attempt));
+        headers.put(NatsHeaders.DLQ_CONSUMER, consumerName);
+        if (msg.isJetStream()) {
+            headers.put(NatsHeaders.DLQ_ORIGINAL_STREAM, msg.metaData().getStream());
+            headers.put(NatsHeaders.DLQ_ORIGINAL_SEQUENCE, String.valueOf(msg.metaData().streamSequence()));
+        }
+        if (cause != null) {
+            headers.put(NatsHeaders.DLQ_EXCEPTION, cause.getClass().getName());
+            if (cause.getMessage() != null) {
+                headers.put(NatsHeaders.DLQ_EXCEPTION_MESSAGE, headerValue(cause.getMessage()));
+            }
+        }
+        try {
+            PublishAck ack = natsTemplate.publish(deadLetterSubject, headers, msg.getData(), null);
+            if (ack.isDuplicate()) {
+                //not stored, keep the original
+                log.error("dead letter of {} to {} dropped as a duplicate by stream {}", consumerName, deadLetterSubject, ack.getStream());
+                return false;
+            }
+            log.warn("message {} of {} failed {} attempts, sent to {}", msg.getSubject(), consumerName, attempt, deadLetterSubject);
+            return true;
+        } catch (Exception e) {
+            log.error("dead letter of {} to {} failed: {}", consumerName, deadLetterSubject, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Header values are single line printable ASCII
+     */
+    static String headerValue(String value) {
+        StringBuilder sb = new StringBuilder(Math.min(value.length(), MAX_HEADER_VALUE_LENGTH));
+        for (int i = 0; i < value.length() && sb.length() < MAX_HEADER_VALUE_LENGTH; i++) {
+            char c = value.charAt(i);
+            sb.append(c >= 0x20 && c < 0x7f ? c : '?');
+        }
+        return sb.toString();
+    }
+}
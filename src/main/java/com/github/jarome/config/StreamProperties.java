@@ -0,0 +1,365 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.NatsMessageListener;
+import com.github.jarome.common.exception.NatsException;
+import io.nats.client.api.CompressionOption;
+import io.nats.client.api.DiscardPolicy;
+import io.nats.client.api.RetentionPolicy;
+import io.nats.client.api.StorageType;
+import io.nats.client.api.StreamConfiguration;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Settings of a JetStream stream, null fields are not configured.
+ * A new stream takes the server defaults for them, except File storage, WorkQueue retention and a max age of 2 days;
+ * an existing stream is only updated for the configured fields that differ.
+ */
+public class StreamProperties {
+    private static final Duration DEFAULT_MAX_AGE = Duration.ofDays(2);
+
+    /**
+     * stream名称
+     */
+    private String name;
+
+    /**
+     * stream的subject, 为空时取使用该stream的监听器的filterSubject
+     */
+    private List<String> subjects;
+
+    /**
+     * 存储类型 File/Memory
+     */
+    private StorageType storage;
+
+    /**
+     * 副本数
+     */
+    private Integer replicas;
+
+    /**
+     * 最大字节数, -1不限制
+     */
+    private Long maxBytes;
+
+    /**
+     * 最大消息数, -1不限制
+     */
+    private Long maxMessages;
+
+    /**
+     * 消息最长保留时间, 0不限制
+     */
+    private Duration maxAge;
+
+    /**
+     * 保留策略 Limits/Interest/WorkQueue
+     */
+    private RetentionPolicy retention;
+
+    /**
+     * 达到限制时的丢弃策略 Old/New
+     */
+    private DiscardPolicy discard;
+
+    /**
+     * Nats-Msg-Id去重窗口
+     */
+    private Duration duplicateWindow;
+
+    /**
+     * 存储压缩 None/S2, 需要nats-server 2.10+
+     */
+    private CompressionOption compression;
+
+    /**
+     * Stream settings declared on a listener
+     */
+    static StreamProperties of(NatsMessageListener annotation) {
+        StreamProperties properties = new StreamProperties();
+        properties.name = annotation.stream();
+        properties.storage = parse(StorageType.class, annotation.streamStorage());
+        properties.replicas = annotation.streamReplicas() > 0 ? annotation.streamReplicas() : null;
+        properties.maxBytes = annotation.streamMaxBytes() != 0 ? annotation.streamMaxBytes() : null;
+        properties.maxMessages = annotation.streamMaxMessages() != 0 ? annotation.streamMaxMessages() : null;
+        properties.maxAge = annotation.streamMaxAge() > 0 ? Duration.ofMillis(annotation.streamMaxAge()) : annotation.streamMaxAge() < 0 ? Duration.ZERO : null;
+        properties.retention = parse(RetentionPolicy.class, annotation.streamRetention());
+        properties.discard = parse(DiscardPolicy.class, annotation.streamDiscard());
+        properties.duplicateWindow = annotation.streamDuplicateWindow() > 0 ? Duration.ofMillis(annotation.streamDuplicateWindow()) : null;
+        properties.compression = parse(CompressionOption.class, annotation.streamCompression());
+        return properties;
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value) {
+        if (!StringUtils.hasLength(value)) {
+            return null;
+        }
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+        }
+        throw new NatsException("unknown " + type.getSimpleName() + " " + value);
+    }
+
+    /**
+     * Take the fields of {@code other} that are configured
+     */
+    void override(StreamProperties other) {
+        subjects = other.subjects != null ? other.subjects : subjects;
+        storage = other.storage != null ? other.storage : storage;
+        replicas = other.replicas != null ? other.replicas : replicas;
+        maxBytes = other.maxBytes != null ? other.maxBytes : maxBytes;
+        maxMessages = other.maxMessages != null ? other.maxMessages : maxMessages;
+        maxAge = other.maxAge != null ? other.maxAge : maxAge;
+        retention = other.retention != null ? other.retention : retention;
+        discard = other.discard != null ? other.discard : discard;
+        duplicateWindow = other.duplicateWindow != null ? other.duplicateWindow : duplicateWindow;
+        compression = other.compression != null ? other.compression : compression;
+    }
+
+    /**
+     * Take the fields of {@code other} that are not configured here, so the first listener of a stream wins
+     */
+    void fill(StreamProperties other) {
+        subjects = subjects != null ? subjects : other.subjects;
+        storage = storage != null ? storage : other.storage;
+        replicas = replicas != null ? replicas : other.replicas;
+        maxBytes = maxBytes != null ? maxBytes : other.maxBytes;
+        maxMessages = maxMessages != null ? maxMessages : other.maxMessages;
+        maxAge = maxAge != null ? maxAge : other.maxAge;
+        retention = retention != null ? retention : other.retention;
+        discard = discard != null ? discard : other.discard;
+        duplicateWindow = duplicateWindow != null ? duplicateWindow : other.duplicateWindow;
+        compression = compression != null ? compression : other.compression;
+    }
+
+    /**
+     * @param listenerSubjects filter subjects of the listeners of the stream, used when no subjects are configured
+     * @return configuration of a new stream
+     */
+    StreamConfiguration toConfiguration(List<String> listenerSubjects) {
+        StreamConfiguration.Builder builder = StreamConfiguration.builder().name(name)
+                .subjects(subjects != null ? subjects : listenerSubjects)
+                .storageType(storage != null ? storage : StorageType.File)
+                .retentionPolicy(retention != null ? retention : RetentionPolicy.WorkQueue)
+                .maxAge(maxAge != null ? maxAge : DEFAULT_MAX_AGE);
+        if (replicas != null) {
+            builder.replicas(replicas);
+        }
+        if (maxBytes != null) {
+            builder.maxBytes(maxBytes);
+        }
+        if (maxMessages != null) {
+            builder.maxMessages(maxMessages);
+        }
+        if (discard != null) {
+            builder.discardPolicy(discard);
+        }
+        if (duplicateWindow != null) {
+            builder.duplicateWindow(duplicateWindow);
+        }
+        if (compression != null) {
+            builder.compressionOption(compression);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param existing         configuration of the stream on the server
+     * @param listenerSubjects filter subjects of the listeners of the stream, added when missing and no subjects are configured
+     * @return updated configuration, null when the stream already matches
+     */
+    StreamConfiguration update(StreamConfiguration existing, List<String> listenerSubjects) {
+        StreamConfiguration.Builder builder = StreamConfiguration.builder(existing);
+        boolean changed = false;
+        List<String> wantedSubjects = subjects != null ? subjects : withoutOverlaps(union(existing.getSubjects(), missingSubjects(existing.getSubjects(), listenerSubjects)));
+        if (!new HashSet<>(wantedSubjects).equals(new HashSet<>(existing.getSubjects()))) {
+            builder.subjects(wantedSubjects);
+            changed = true;
+        }
+        if (storage != null && storage != existing.getStorageType()) {
+            builder.storageType(storage);
+            changed = true;
+        }
+        if (replicas != null && replicas != existing.getReplicas()) {
+            builder.replicas(replicas);
+            changed = true;
+        }
+        if (maxBytes != null && maxBytes != existing.getMaxBytes()) {
+            builder.maxBytes(maxBytes);
+            changed = true;
+        }
+        if (maxMessages != null && maxMessages != existing.getMaxMsgs()) {
+            builder.maxMessages(maxMessages);
+            changed = true;
+        }
+        if (maxAge != null && !maxAge.equals(existing.getMaxAge())) {
+            builder.maxAge(maxAge);
+            changed = true;
+        }
+        if (retention != null && retention != existing.getRetentionPolicy()) {
+            builder.retentionPolicy(retention);
+            changed = true;
+        }
+        if (discard != null && discard != existing.getDiscardPolicy()) {
+            builder.discardPolicy(discard);
+            changed = true;
+        }
+        if (duplicateWindow != null && !duplicateWindow.equals(existing.getDuplicateWindow())) {
+            builder.duplicateWindow(duplicateWindow);
+            changed = true;
+        }
+        if (compression != null && compression != existing.getCompressionOption()) {
+            builder.compressionOption(compression);
+            changed = true;
+        }
+        return changed ? builder.build() : null;
+    }
+
+    /**
+     * @return listener subjects the stream does not cover yet
+     */
+    private static List<String> missingSubjects(List<String> streamSubjects, List<String> listenerSubjects) {
+        List<String> missing = new ArrayList<>();
+        for (String subject : listenerSubjects) {
+            if (streamSubjects.stream().noneMatch(streamSubject -> covers(streamSubject, subject))) {
+                missing.add(subject);
+            }
+        }
+        return missing;
+    }
+
+    private static List<String> union(List<String> streamSubjects, List<String> missing) {
+        List<String> union = new ArrayList<>(streamSubjects);
+        union.addAll(missing);
+        return union;
+    }
+
+    /**
+     * Drop the subjects covered by a wildcard of another one, the server refuses overlapping stream subjects
+     */
+    static List<String> withoutOverlaps(List<String> subjects) {
+        List<String> result = new ArrayList<>();
+        for (String subject : subjects) {
+            if (!result.contains(subject) && subjects.stream().noneMatch(other -> !other.equals(subject) && covers(other, subject))) {
+                result.add(subject);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true when every subject matching {@code subject} also matches {@code pattern}
+     */
+    static boolean covers(String pattern, String subject) {
+        String[] patternTokens = pattern.split("\\.");
+        String[] subjectTokens = subject.split("\\.");
+        for (int i = 0; i < patternTokens.length; i++) {
+            if (">".equals(patternTokens[i])) {
+                return subjectTokens.length > i;
+            }
+            if (i >= subjectTokens.length || ">".equals(subjectTokens[i])) {
+                return false;
+            }
+            if (!"*".equals(patternTokens[i]) && !Objects.equals(patternTokens[i], subjectTokens[i])) {
+                return false;
+            }
+        }
+        return patternTokens.length == subjectTokens.length;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<String> getSubjects() {
+        return subjects;
+    }
+
+    public void setSubjects(List<String> subjects) {
+        this.subjects = subjects;
+    }
+
+    public StorageType getStorage() {
+        return storage;
+    }
+
+    public void setStorage(StorageType storage) {
+        this.storage = storage;
+    }
+
+    public Integer getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(Integer replicas) {
+        this.replicas = replicas;
+    }
+
+    public Long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(Long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Long getMaxMessages() {
+        return maxMessages;
+    }
+
+    public void setMaxMessages(Long maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public RetentionPolicy getRetention() {
+        return retention;
+    }
+
+    public void setRetention(RetentionPolicy retention) {
+        this.retention = retention;
+    }
+
+    public DiscardPolicy getDiscard() {
+        return discard;
+    }
+
+    public void setDiscard(DiscardPolicy discard) {
+        this.discard = discard;
+    }
+
+    public Duration getDuplicateWindow() {
+        return duplicateWindow;
+    }
+
+    public void setDuplicateWindow(Duration duplicateWindow) {
+        this.duplicateWindow = duplicateWindow;
+    }
+
+    public CompressionOption getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionOption compression) {
+        this.compression = compression;
+    }
+}
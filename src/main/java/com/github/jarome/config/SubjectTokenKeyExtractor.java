@@ -0,0 +1,29 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.NatsMessageKeyExtractor;
+import io.nats.client.Message;
+
+/**
+ * Uses one token of the subject as the ordering key, e.g. token 2 of {@code order.created.1001} is {@code 1001}
+ */
+public class SubjectTokenKeyExtractor implements NatsMessageKeyExtractor {
+    private final int token;
+
+    public SubjectTokenKeyExtractor(int token) {
+        this.token = token;
+    }
+
+    @Override
+    public String extractKey(Message message) {
+        String subject = message.getSubject();
+        int start = 0;
+        for (int i = 0; i < token; i++) {
+            start = subject.indexOf('.', start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int end = subject.indexOf('.', start);
+        return end < 0 ? subject.substring(start) : subject.substring(start, end);
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.jarome.config;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a new (virtual) thread for every task and caps the running tasks with a semaphore instead of a pool size.
+ * {@link #execute(Runnable)} waits for a free permit, the same back pressure {@link BlockingRejectedExecutionHandler}
+ * gives a full pool.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    /**
+     * Threads running a task, interrupted by {@link #shutdownNow()}
+     */
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+    private volatile boolean interrupted;
+
+    /**
+     * @param threadFactory  factory of the task threads
+     * @param maxConcurrency max tasks running at the same time
+     */
+    public VirtualThreadExecutor(ThreadFactory threadFactory, int maxConcurrency) {
+        this.threadFactory = threadFactory;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a free permit", e);
+        }
+        Thread thread = null;
+        try {
+            thread = threadFactory.newThread(() -> {
+                try {
+                    command.run();
+                } finally {
+                    threads.remove(Thread.currentThread());
+                    permits.release();
+                }
+            });
+            //added before start, so the thread always finds itself when it removes itself
+            threads.add(thread);
+            thread.start();
+        } catch (RuntimeException | Error e) {
+            if (thread != null) {
+                threads.remove(thread);
+            }
+            permits.release();
+            throw e;
+        }
+        if (interrupted) {
+            //shutdownNow ran while this thread was starting
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return tasks running now
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        interrupted = true;
+        //no queue, every accepted task already has its thread
+        threads.forEach(Thread::interrupt);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && permits.availablePermits() == maxConcurrency;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!permits.tryAcquire(maxConcurrency, timeout, unit)) {
+            return false;
+        }
+        permits.release(maxConcurrency);
+        return shutdown;
+    }
+}
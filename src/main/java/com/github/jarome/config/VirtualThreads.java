@@ -0,0 +1,28 @@
+package com.github.jarome.config;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads. This is the Java 11 version, the Java 21 version lives in
+ * {@code src/main/java21} and is packed under {@code META-INF/versions/21} of the multi-release jar.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether virtual threads are available
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @param threadNamePrefix prefix of the thread names
+     * @return factory of virtual threads
+     */
+    public static ThreadFactory newThreadFactory(String threadNamePrefix) {
+        throw new UnsupportedOperationException("virtual threads need Java 21 and the multi-release starter jar");
+    }
+}
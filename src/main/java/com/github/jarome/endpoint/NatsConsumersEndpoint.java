@@ -0,0 +1,84 @@
+package com.github.jarome.endpoint;
+
+import com.github.jarome.config.ConsumerAutoscaler;
+import com.github.jarome.config.NatsListenerContainer;
+import com.github.jarome.config.NatsListenerRegistry;
+import com.github.jarome.config.PullConsumer;
+import com.github.jarome.config.PullListenerContainer;
+import com.github.jarome.config.PullMessageService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * {@code /actuator/natsconsumers}: settings of the running listeners, POST to {@code /actuator/natsconsumers/{name}}
+ * changes pool sizes, pull batch size, wait times or pauses and resumes the listener
+ */
+@Endpoint(id = "natsconsumers")
+public class NatsConsumersEndpoint {
+    private final NatsListenerRegistry natsListenerRegistry;
+
+    public NatsConsumersEndpoint(NatsListenerRegistry natsListenerRegistry) {
+        this.natsListenerRegistry = natsListenerRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> consumers() {
+        Map<String, Map<String, Object>> consumers = new LinkedHashMap<>();
+        natsListenerRegistry.getContainers().forEach((name, container) -> consumers.put(name, describe(container)));
+        return consumers;
+    }
+
+    @ReadOperation
+    public Map<String, Object> consumer(@Selector String name) {
+        NatsListenerContainer container = natsListenerRegistry.getContainer(name);
+        return container == null ? null : describe(container);
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Selector String name, @Nullable Integer consumeThreadNumber, @Nullable Integer consumeThreadMax,
+                                      @Nullable Integer pullBatchSize, @Nullable Long maxWaitTime, @Nullable Long pullInterval, @Nullable Boolean paused) {
+        PullConsumer settings = new PullConsumer();
+        settings.setConsumeThreadNumber(consumeThreadNumber);
+        settings.setConsumeThreadMax(consumeThreadMax);
+        settings.setPullBatchSize(pullBatchSize);
+        settings.setMaxWaitTime(maxWaitTime);
+        settings.setPullInterval(pullInterval);
+        settings.setPaused(paused);
+        natsListenerRegistry.update(name, settings);
+        return consumer(name);
+    }
+
+    private Map<String, Object> describe(NatsListenerContainer container) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("subject", container.getSubject());
+        description.put("running", container.isRunning());
+        description.put("paused", container.isPaused());
+        description.put("inFlight", container.getInFlightCount());
+        ThreadPoolExecutor consumeExecutor = container.getConsumeExecutor();
+        if (consumeExecutor != null) {
+            description.put("consumeThreadNumber", consumeExecutor.getCorePoolSize());
+            description.put("consumeThreadMax", consumeExecutor.getMaximumPoolSize());
+            description.put("activeThreads", consumeExecutor.getActiveCount());
+        }
+        if (container instanceof PullListenerContainer) {
+            PullMessageService pullMessageService = ((PullListenerContainer) container).getPullMessageService();
+            description.put("capacity", pullMessageService.getCapacity());
+            description.put("pullBatchSize", pullMessageService.getPullBatchSize());
+            description.put("maxWaitTime", pullMessageService.getMaxWaitTime());
+            description.put("pullInterval", pullMessageService.getPullInterval());
+        }
+        ConsumerAutoscaler autoscaler = container.getAutoscaler();
+        if (autoscaler != null) {
+            description.put("autoscaleConcurrency", autoscaler.getConcurrency());
+            description.put("pending", autoscaler.getPending());
+        }
+        return description;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.jarome.endpoint;
+
+import com.github.jarome.config.NatsListenerRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+public class NatsEndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public NatsConsumersEndpoint natsConsumersEndpoint(NatsListenerRegistry natsListenerRegistry) {
+        return new NatsConsumersEndpoint(natsListenerRegistry);
+    }
+}
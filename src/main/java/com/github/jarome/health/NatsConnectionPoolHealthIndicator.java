@@ -0,0 +1,44 @@
+package com.github.jarome.health;
+
+import com.github.jarome.config.NatsConnectionPool;
+import io.nats.client.Connection;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of the pooled connections: DOWN when none is connected, UP otherwise since publishing fails over
+ * and the others reconnect on their own. The disconnected ones are listed in the details.
+ */
+public class NatsConnectionPoolHealthIndicator extends AbstractHealthIndicator {
+    private final NatsConnectionPool natsConnectionPool;
+
+    public NatsConnectionPoolHealthIndicator(NatsConnectionPool natsConnectionPool) {
+        super("NATS connection pool health check failed");
+        this.natsConnectionPool = natsConnectionPool;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        List<String> statuses = new ArrayList<>(natsConnectionPool.size());
+        long connected = 0;
+        for (int i = 0; i < natsConnectionPool.size(); i++) {
+            Connection.Status status = natsConnectionPool.getConnection(i).getStatus();
+            statuses.add(status.name());
+            if (status == Connection.Status.CONNECTED) {
+                connected++;
+            }
+        }
+        if (connected == 0) {
+            builder.down();
+        } else {
+            builder.up();
+        }
+        builder.withDetail("size", natsConnectionPool.size())
+                .withDetail("connected", connected)
+                .withDetail("statuses", statuses)
+                .withDetail("failovers", natsConnectionPool.getFailoverCount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.jarome.health;
+
+import com.github.jarome.config.NatsConsumerConfig;
+import com.github.jarome.config.NatsListenerContainer;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Readiness of the listeners: OUT_OF_SERVICE while they are registered or not running, DOWN once a registration failed.
+ * Add {@code natsConsumers} to the readiness group to hold traffic back until a lazy startup is done.
+ */
+public class NatsConsumersHealthIndicator extends AbstractHealthIndicator {
+    private final NatsConsumerConfig natsConsumerConfig;
+
+    public NatsConsumersHealthIndicator(NatsConsumerConfig natsConsumerConfig) {
+        super("NATS consumers health check failed");
+        this.natsConsumerConfig = natsConsumerConfig;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        Map<String, NatsListenerContainer> containers = natsConsumerConfig.getContainers();
+        Map<String, Throwable> failures = natsConsumerConfig.getRegistrationFailures();
+        long running = containers.values().stream().filter(NatsListenerContainer::isRunning).count();
+        if (!failures.isEmpty()) {
+            builder.down();
+        } else if (!natsConsumerConfig.isStartupComplete() || running < containers.size()) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+        builder.withDetail("listeners", natsConsumerConfig.getListenerCount())
+                .withDetail("registered", containers.size())
+                .withDetail("running", running);
+        if (!failures.isEmpty()) {
+            Map<String, String> failed = new LinkedHashMap<>();
+            failures.forEach((beanName, e) -> failed.put(beanName, String.valueOf(e.getMessage())));
+            builder.withDetail("failed", failed);
+        }
+    }
+}
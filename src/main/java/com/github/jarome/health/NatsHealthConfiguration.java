@@ -0,0 +1,25 @@
+package com.github.jarome.health;
+
+import com.github.jarome.config.NatsConnectionPool;
+import com.github.jarome.config.NatsConsumerConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+public class NatsHealthConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(name = "natsConsumersHealthIndicator")
+    public NatsConsumersHealthIndicator natsConsumersHealthIndicator(NatsConsumerConfig natsConsumerConfig) {
+        return new NatsConsumersHealthIndicator(natsConsumerConfig);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "natsConnectionPoolHealthIndicator")
+    public NatsConnectionPoolHealthIndicator natsConnectionPoolHealthIndicator(NatsConnectionPool natsConnectionPool) {
+        return new NatsConnectionPoolHealthIndicator(natsConnectionPool);
+    }
+}
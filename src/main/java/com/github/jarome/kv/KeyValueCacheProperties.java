@@ -0,0 +1,130 @@
+package com.github.jarome.kv;
+
+import com.github.jarome.codec.JacksonCodec;
+import io.nats.client.api.StorageType;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link NatsKeyValueCache}
+ */
+public class KeyValueCacheProperties {
+
+    /**
+     * 缓存名称
+     */
+    private String name;
+
+    /**
+     * KeyValue bucket, 为空时取name, 不存在时创建
+     */
+    private String bucket;
+
+    /**
+     * 本地最多缓存的key数, 超过后淘汰最久未读取的
+     */
+    private int maxSize = 10000;
+
+    /**
+     * 本地缓存的最长时间, 为空不限制(bucket的变更通过watch实时更新)
+     */
+    private Duration ttl;
+
+    /**
+     * 值的codec(content type), String和byte[]总是原样存储
+     */
+    private String codec = JacksonCodec.JSON;
+
+    /**
+     * 值的类型, 为空时每个值前都会存储其类名, 按该类读取
+     */
+    private Class<?> valueType;
+
+    /**
+     * 创建bucket时的存储类型 File/Memory
+     */
+    private StorageType storage = StorageType.File;
+
+    /**
+     * 创建bucket时的副本数
+     */
+    private int replicas = 1;
+
+    public KeyValueCacheProperties() {
+    }
+
+    public KeyValueCacheProperties(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the bucket, the name when none is configured
+     */
+    public String getBucketOrName() {
+        return bucket != null && !bucket.isEmpty() ? bucket : name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public Class<?> getValueType() {
+        return valueType;
+    }
+
+    public void setValueType(Class<?> valueType) {
+        this.valueType = valueType;
+    }
+
+    public StorageType getStorage() {
+        return storage;
+    }
+
+    public void setStorage(StorageType storage) {
+        this.storage = storage;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(int replicas) {
+        this.replicas = replicas;
+    }
+}
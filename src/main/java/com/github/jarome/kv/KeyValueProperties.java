@@ -0,0 +1,48 @@
+package com.github.jarome.kv;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "nats.kv")
+public class KeyValueProperties {
+
+    /**
+     * Register a CacheManager backed by KeyValue buckets
+     */
+    private boolean cacheManager = false;
+
+    /**
+     * Create caches that are not configured on first use, with the default settings and a bucket of the cache name
+     */
+    private boolean dynamic = true;
+
+    /**
+     * Caches of the CacheManager
+     */
+    private List<KeyValueCacheProperties> caches;
+
+    public boolean isCacheManager() {
+        return cacheManager;
+    }
+
+    public void setCacheManager(boolean cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public boolean isDynamic() {
+        return dynamic;
+    }
+
+    public void setDynamic(boolean dynamic) {
+        this.dynamic = dynamic;
+    }
+
+    public List<KeyValueCacheProperties> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(List<KeyValueCacheProperties> caches) {
+        this.caches = caches;
+    }
+}
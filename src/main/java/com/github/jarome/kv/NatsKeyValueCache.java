@@ -0,0 +1,343 @@
+package com.github.jarome.kv;
+
+import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.config.PayloadReader;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.KeyValue;
+import io.nats.client.api.KeyValueEntry;
+import io.nats.client.api.KeyValueOperation;
+import io.nats.client.api.KeyValueWatchOption;
+import io.nats.client.api.KeyValueWatcher;
+import io.nats.client.impl.NatsKeyValueWatchSubscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Near cache of a KeyValue bucket. Reads are served from a bounded local LRU map and load the key from the bucket
+ * on a miss, missing keys are cached too. A watch of the bucket applies every put, delete and purge of a cached key
+ * by revision, so the local map follows the bucket without polling; entries older than the ttl are loaded again.
+ *
+ * @param <K> key type, mapped to a bucket key
+ * @param <V> value type
+ */
+public class NatsKeyValueCache<K, V> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(NatsKeyValueCache.class);
+
+    private final String name;
+    private final KeyValue keyValue;
+    private final Function<K, String> keyMapper;
+    private final Function<V, byte[]> encoder;
+    private final PayloadReader reader;
+    private final long ttlNanos;
+    private final Object lock = new Object();
+    /**
+     * Access ordered, the least recently read entry is evicted first
+     */
+    private final LinkedHashMap<String, CachedValue<V>> entries;
+    /**
+     * Keys being loaded from the bucket, a watch event in the meantime keeps the loaded value out of the map
+     */
+    private final Map<String, Loading> loading = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private NatsKeyValueWatchSubscription watch;
+
+    /**
+     * @param name      cache name
+     * @param keyValue  bucket
+     * @param keyMapper bucket key of a key, only the characters - / _ = . a-z A-Z 0-9 are allowed
+     * @param encoder   serializes the values that are put
+     * @param reader    reads the values of the bucket
+     * @param maxSize   max entries kept locally
+     * @param ttl       max time an entry is kept locally, ms, 0 for no limit
+     */
+    public NatsKeyValueCache(String name, KeyValue keyValue, Function<K, String> keyMapper, Function<V, byte[]> encoder, PayloadReader reader, int maxSize, long ttl) {
+        this.name = name;
+        this.keyValue = keyValue;
+        this.keyMapper = keyMapper;
+        this.encoder = encoder;
+        this.reader = reader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, ttl));
+        int capacity = Math.max(1, maxSize);
+        this.entries = new LinkedHashMap<String, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedValue<V>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Watch the bucket, only changes made from now on are delivered
+     */
+    public void start() {
+        try {
+            watch = keyValue.watchAll(new KeyValueWatcher() {
+                @Override
+                public void watch(KeyValueEntry entry) {
+                    changed(entry);
+                }
+
+                @Override
+                public void endOfData() {
+                    //UPDATES_ONLY has no initial data
+                }
+            }, KeyValueWatchOption.UPDATES_ONLY);
+        } catch (IOException | JetStreamApiException e) {
+            throw new NatsException("cannot watch bucket " + keyValue.getBucketName() + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsException("interrupted watching bucket " + keyValue.getBucketName(), e);
+        }
+    }
+
+    /**
+     * @return the value, null when the bucket has no value for the key
+     */
+    public V get(K key) {
+        String bucketKey = keyMapper.apply(key);
+        Loading load = null;
+        synchronized (lock) {
+            CachedValue<V> cached = entries.get(bucketKey);
+            if (cached != null) {
+                if (ttlNanos == 0L || System.nanoTime() - cached.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return cached.value;
+                }
+                entries.remove(bucketKey);
+            }
+            if (!loading.containsKey(bucketKey)) {
+                load = new Loading();
+                loading.put(bucketKey, load);
+            }
+        }
+        misses.increment();
+        try {
+            CachedValue<V> loaded = load(bucketKey);
+            if (load != null) {
+                synchronized (lock) {
+                    if (!load.stale) {
+                        store(bucketKey, loaded);
+                    }
+                }
+            }
+            return loaded.value;
+        } finally {
+            if (load != null) {
+                synchronized (lock) {
+                    loading.remove(bucketKey, load);
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the value into the bucket and the local map
+     */
+    public void put(K key, V value) {
+        String bucketKey = keyMapper.apply(key);
+        long revision;
+        try {
+            revision = keyValue.put(bucketKey, encoder.apply(value));
+        } catch (IOException | JetStreamApiException e) {
+            throw new NatsException("cannot put " + bucketKey + " into bucket " + keyValue.getBucketName() + ": " + e.getMessage(), e);
+        }
+        synchronized (lock) {
+            store(bucketKey, new CachedValue<>(value, revision));
+        }
+    }
+
+    /**
+     * Delete the key from the bucket
+     */
+    public void delete(K key) {
+        String bucketKey = keyMapper.apply(key);
+        try {
+            keyValue.delete(bucketKey);
+        } catch (IOException | JetStreamApiException e) {
+            throw new NatsException("cannot delete " + bucketKey + " from bucket " + keyValue.getBucketName() + ": " + e.getMessage(), e);
+        }
+        invalidateKey(bucketKey);
+    }
+
+    /**
+     * Delete every key of the bucket
+     */
+    public void deleteAll() {
+        List<String> keys;
+        try {
+            keys = keyValue.keys();
+        } catch (IOException | JetStreamApiException e) {
+            throw new NatsException("cannot list the keys of bucket " + keyValue.getBucketName() + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsException("interrupted listing the keys of bucket " + keyValue.getBucketName(), e);
+        }
+        for (String key : keys) {
+            try {
+                keyValue.delete(key);
+            } catch (IOException | JetStreamApiException e) {
+                throw new NatsException("cannot delete " + key + " from bucket " + keyValue.getBucketName() + ": " + e.getMessage(), e);
+            }
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Drop the local entry of the key, the next read loads it again
+     */
+    public void invalidate(K key) {
+        invalidateKey(keyMapper.apply(key));
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            entries.clear();
+            loading.values().forEach(load -> load.stale = true);
+        }
+    }
+
+    private void invalidateKey(String bucketKey) {
+        synchronized (lock) {
+            entries.remove(bucketKey);
+            Loading load = loading.get(bucketKey);
+            if (load != null) {
+                load.stale = true;
+            }
+        }
+    }
+
+    private CachedValue<V> load(String bucketKey) {
+        KeyValueEntry entry;
+        try {
+            entry = keyValue.get(bucketKey);
+        } catch (IOException | JetStreamApiException e) {
+            throw new NatsException("cannot get " + bucketKey + " from bucket " + keyValue.getBucketName() + ": " + e.getMessage(), e);
+        }
+        if (entry == null) {
+            return new CachedValue<>(null, 0L);
+        }
+        return new CachedValue<>(entry.getOperation() == KeyValueOperation.PUT ? read(entry) : null, entry.getRevision());
+    }
+
+    @SuppressWarnings("unchecked")
+    private V read(KeyValueEntry entry) {
+        try {
+            return (V) reader.read(entry.getValue());
+        } catch (Exception e) {
+            throw new NatsException("cannot read " + entry.getKey() + " of bucket " + entry.getBucket() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Keep the newer revision, called holding the lock
+     */
+    private void store(String bucketKey, CachedValue<V> value) {
+        CachedValue<V> cached = entries.get(bucketKey);
+        if (cached == null || cached.revision <= value.revision) {
+            entries.put(bucketKey, value);
+        }
+    }
+
+    private void changed(KeyValueEntry entry) {
+        String bucketKey = entry.getKey();
+        synchronized (lock) {
+            Loading load = loading.get(bucketKey);
+            if (load != null) {
+                //the load may have read the value before this change
+                load.stale = true;
+            }
+            CachedValue<V> cached = entries.get(bucketKey);
+            if (cached == null || cached.revision >= entry.getRevision()) {
+                //keys that are not cached are loaded on the next read
+                return;
+            }
+        }
+        CachedValue<V> value;
+        try {
+            value = new CachedValue<>(entry.getOperation() == KeyValueOperation.PUT ? read(entry) : null, entry.getRevision());
+        } catch (NatsException e) {
+            log.warn("{}, dropped from cache {}", e.getMessage(), name);
+            invalidateKey(bucketKey);
+            return;
+        }
+        synchronized (lock) {
+            CachedValue<V> cached = entries.get(bucketKey);
+            if (cached != null && cached.revision < value.revision) {
+                entries.put(bucketKey, value);
+            }
+        }
+    }
+
+    /**
+     * Stop watching the bucket and drop the local entries
+     */
+    @Override
+    public void close() {
+        if (watch != null) {
+            watch.unsubscribe();
+            watch = null;
+        }
+        invalidateAll();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBucket() {
+        return keyValue.getBucketName();
+    }
+
+    public KeyValue getKeyValue() {
+        return keyValue;
+    }
+
+    /**
+     * @return entries kept locally
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return reads served locally
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return reads that loaded the key from the bucket
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static final class CachedValue<V> {
+        private final V value;
+        private final long revision;
+        private final long loadedAt = System.nanoTime();
+
+        private CachedValue(V value, long revision) {
+            this.value = value;
+            this.revision = revision;
+        }
+    }
+
+    private static final class Loading {
+        private boolean stale;
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.jarome.kv;
+
+import com.github.jarome.codec.NatsCodec;
+import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.config.NatsMessageConverter;
+import com.github.jarome.config.PayloadReader;
+import io.nats.client.Connection;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.KeyValue;
+import io.nats.client.KeyValueManagement;
+import io.nats.client.api.KeyValueConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Creates {@link NatsKeyValueCache}s on the connection of the starter, values are written with the codecs of the
+ * {@link NatsMessageConverter}. The watches of the caches are closed with the application context
+ */
+public class NatsKeyValueCacheFactory implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(NatsKeyValueCacheFactory.class);
+
+    /**
+     * Ends the class name in front of a value of a typed cache, never part of a class name
+     */
+    private static final byte TYPE_SEPARATOR = '\n';
+
+    private final Connection connection;
+    private final NatsMessageConverter natsMessageConverter;
+    private final List<NatsKeyValueCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    public NatsKeyValueCacheFactory(Connection connection, NatsMessageConverter natsMessageConverter) {
+        this.connection = connection;
+        this.natsMessageConverter = natsMessageConverter;
+    }
+
+    /**
+     * Cache of a bucket with the default settings and String keys
+     */
+    public <V> NatsKeyValueCache<String, V> create(String bucket, Class<V> valueType) {
+        KeyValueCacheProperties properties = new KeyValueCacheProperties(bucket);
+        properties.setValueType(valueType);
+        return create(properties, valueType, Function.identity());
+    }
+
+    /**
+     * @param properties cache settings, the bucket is created when missing
+     * @param valueType  value type, may be generic
+     * @param keyMapper  bucket key of a key
+     * @return the started cache
+     */
+    public <K, V> NatsKeyValueCache<K, V> create(KeyValueCacheProperties properties, Type valueType, Function<K, String> keyMapper) {
+        String bucket = properties.getBucketOrName();
+        if (bucket == null || bucket.isEmpty()) {
+            throw new NatsException("key value cache needs a name or a bucket");
+        }
+        NatsCodec codec = natsMessageConverter.getCodec(properties.getCodec());
+        PayloadReader reader = natsMessageConverter.getPayloadReader(valueType, null, properties.getCodec());
+        return open(properties, bucket, keyMapper, value -> encode(codec, properties.getCodec(), value), reader);
+    }
+
+    /**
+     * Cache of values of any type: the class name is stored in front of every value and the value is read as that class
+     *
+     * @param properties cache settings, the bucket is created when missing
+     * @param keyMapper  bucket key of a key
+     * @return the started cache
+     */
+    public <K> NatsKeyValueCache<K, Object> createTyped(KeyValueCacheProperties properties, Function<K, String> keyMapper) {
+        String bucket = properties.getBucketOrName();
+        if (bucket == null || bucket.isEmpty()) {
+            throw new NatsException("key value cache needs a name or a bucket");
+        }
+        NatsCodec codec = natsMessageConverter.getCodec(properties.getCodec());
+        Map<String, PayloadReader> readers = new ConcurrentHashMap<>();
+        return open(properties, bucket, keyMapper, value -> {
+            byte[] type = value.getClass().getName().getBytes(StandardCharsets.UTF_8);
+            byte[] data = encode(codec, properties.getCodec(), value);
+            byte[] typed = new byte[type.length + 1 + data.length];
+            System.arraycopy(type, 0, typed, 0, type.length);
+            typed[type.length] = TYPE_SEPARATOR;
+            System.arraycopy(data, 0, typed, type.length + 1, data.length);
+            return typed;
+        }, data -> {
+            int separator = indexOf(data, TYPE_SEPARATOR);
+            if (separator < 0) {
+                throw new NatsException("value without type in bucket " + bucket);
+            }
+            PayloadReader reader = readers.computeIfAbsent(new String(data, 0, separator, StandardCharsets.UTF_8),
+                    type -> natsMessageConverter.getPayloadReader(loadClass(type), null, properties.getCodec()));
+            return reader.read(Arrays.copyOfRange(data, separator + 1, data.length));
+        });
+    }
+
+    private <K, V> NatsKeyValueCache<K, V> open(KeyValueCacheProperties properties, String bucket, Function<K, String> keyMapper, Function<V, byte[]> encoder, PayloadReader reader) {
+        try {
+            KeyValue keyValue = connection.keyValue(getOrCreateBucket(properties, bucket));
+            NatsKeyValueCache<K, V> cache = new NatsKeyValueCache<>(properties.getName() != null ? properties.getName() : bucket, keyValue, keyMapper,
+                    encoder, reader, properties.getMaxSize(), properties.getTtl() == null ? 0L : properties.getTtl().toMillis());
+            cache.start();
+            caches.add(cache);
+            return cache;
+        } catch (IOException e) {
+            throw new NatsException("cannot open bucket " + bucket + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String getOrCreateBucket(KeyValueCacheProperties properties, String bucket) throws IOException {
+        KeyValueManagement kvm = connection.keyValueManagement();
+        try {
+            kvm.getStatus(bucket);
+            return bucket;
+        } catch (JetStreamApiException e) {
+            if (e.getErrorCode() != 404) {
+                throw new NatsException("cannot get bucket " + bucket + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            kvm.create(KeyValueConfiguration.builder().name(bucket).storageType(properties.getStorage()).replicas(properties.getReplicas()).build());
+            log.info("Created key value bucket {}", bucket);
+        } catch (JetStreamApiException e) {
+            //another instance may have created it in the meantime
+            log.warn("cannot create key value bucket {}: {}", bucket, e.getMessage());
+        }
+        return bucket;
+    }
+
+    private static int indexOf(byte[] data, byte b) {
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Class<?> loadClass(String name) {
+        try {
+            return ClassUtils.forName(name, ClassUtils.getDefaultClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new NatsException("unknown value type " + name, e);
+        }
+    }
+
+    private static byte[] encode(NatsCodec codec, String contentType, Object value) {
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        if (codec == null) {
+            throw new NatsException("no codec registered for content type " + contentType);
+        }
+        try {
+            return codec.encode(value);
+        } catch (Exception e) {
+            throw new NatsException("encode with " + contentType + " failed.", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        caches.forEach(NatsKeyValueCache::close);
+        caches.clear();
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.jarome.kv;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractCacheManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link org.springframework.cache.CacheManager} of the caches configured under {@code nats.kv.caches},
+ * other caches are created on first use when {@code nats.kv.dynamic} is on
+ */
+public class NatsKeyValueCacheManager extends AbstractCacheManager {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final NatsKeyValueCacheFactory factory;
+    private final KeyValueProperties properties;
+
+    public NatsKeyValueCacheManager(NatsKeyValueCacheFactory factory, KeyValueProperties properties) {
+        this.factory = factory;
+        this.properties = properties;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        if (properties.getCaches() == null) {
+            return Collections.emptyList();
+        }
+        List<Cache> caches = new ArrayList<>();
+        for (KeyValueCacheProperties cacheProperties : properties.getCaches()) {
+            caches.add(createCache(cacheProperties));
+        }
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return properties.isDynamic() ? createCache(new KeyValueCacheProperties(name)) : null;
+    }
+
+    private Cache createCache(KeyValueCacheProperties cacheProperties) {
+        //without a value type every value carries its class, else @Cacheable would get maps back
+        return new NatsKeyValueSpringCache(cacheProperties.getValueType() == null
+                ? factory.createTyped(cacheProperties, NatsKeyValueCacheManager::toBucketKey)
+                : factory.create(cacheProperties, cacheProperties.getValueType(), NatsKeyValueCacheManager::toBucketKey));
+    }
+
+    /**
+     * Bucket key of a cache key: toString with every character a KeyValue key does not allow, and '.' and '=',
+     * written as =XX per UTF-8 byte, so two keys never share a bucket key
+     *
+     * @param key cache key
+     * @return valid KeyValue key
+     */
+    static String toBucketKey(Object key) {
+        String value = String.valueOf(key);
+        if (value.isEmpty()) {
+            return "=";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isPlain(c)) {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(value.length() + 16).append(value, 0, i);
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+            for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                sb.append('=').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            i = end - 1;
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    /**
+     * '.' separates the tokens of a key and may not start, end or repeat, it is escaped too
+     */
+    private static boolean isPlain(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '/';
+    }
+}
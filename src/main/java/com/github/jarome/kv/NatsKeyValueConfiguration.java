@@ -0,0 +1,26 @@
+package com.github.jarome.kv;
+
+import com.github.jarome.config.NatsMessageConverter;
+import io.nats.client.Connection;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(KeyValueProperties.class)
+public class NatsKeyValueConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public NatsKeyValueCacheFactory natsKeyValueCacheFactory(Connection connection, NatsMessageConverter natsMessageConverter) {
+        return new NatsKeyValueCacheFactory(connection, natsMessageConverter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "nats.kv", name = "cache-manager", havingValue = "true")
+    public NatsKeyValueCacheManager natsKeyValueCacheManager(NatsKeyValueCacheFactory natsKeyValueCacheFactory, KeyValueProperties keyValueProperties) {
+        return new NatsKeyValueCacheManager(natsKeyValueCacheFactory, keyValueProperties);
+    }
+}
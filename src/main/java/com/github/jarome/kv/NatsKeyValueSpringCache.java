@@ -0,0 +1,86 @@
+package com.github.jarome.kv;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Spring {@link org.springframework.cache.Cache} over a {@link NatsKeyValueCache}, keys are mapped by the cache manager.
+ * Null values are not stored, a missing key is a cache miss
+ */
+public class NatsKeyValueSpringCache extends AbstractValueAdaptingCache {
+    private final NatsKeyValueCache<Object, Object> cache;
+    private final ConcurrentMap<Object, Object> loadLocks = new ConcurrentHashMap<>();
+
+    public NatsKeyValueSpringCache(NatsKeyValueCache<Object, Object> cache) {
+        super(false);
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public NatsKeyValueCache<Object, Object> getNativeCache() {
+        return cache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        return cache.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = cache.get(key);
+        if (value != null) {
+            return (T) value;
+        }
+        //one loader per key, other keys load at the same time
+        Object keyLock = loadLocks.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (keyLock) {
+                value = cache.get(key);
+                if (value != null) {
+                    return (T) value;
+                }
+                T loaded;
+                try {
+                    loaded = valueLoader.call();
+                } catch (Exception e) {
+                    throw new ValueRetrievalException(key, valueLoader, e);
+                }
+                if (loaded != null) {
+                    cache.put(key, loaded);
+                }
+                return loaded;
+            }
+        } finally {
+            loadLocks.remove(key, keyLock);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            cache.delete(key);
+            return;
+        }
+        cache.put(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        cache.delete(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.deleteAll();
+    }
+}
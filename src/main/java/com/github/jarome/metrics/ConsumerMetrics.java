@@ -0,0 +1,107 @@
+package com.github.jarome.metrics;
+
+import com.github.jarome.config.ConsumerAutoscaler;
+import com.github.jarome.config.OrderedMessageDispatcher;
+import com.github.jarome.config.PushListenerContainer;
+import com.github.jarome.config.VirtualThreadExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Instrumentation points of one listener, every method defaults to a no-op
+ */
+public interface ConsumerMetrics {
+    ConsumerMetrics NOOP = new ConsumerMetrics() {
+    };
+
+    /**
+     * A pull request was sent
+     *
+     * @param batchSize messages asked for
+     */
+    default void pullRequested(int batchSize) {
+    }
+
+    /**
+     * A pull request expired without delivering any message
+     */
+    default void pullEmpty() {
+    }
+
+    /**
+     * The pull loop waited for the next message
+     *
+     * @param nanos wait time
+     */
+    default void pullWaited(long nanos) {
+    }
+
+    /**
+     * The listener returned
+     *
+     * @param nanos   handler time
+     * @param success false when the listener threw
+     */
+    default void handled(long nanos, boolean success) {
+    }
+
+    default void acked(int count) {
+    }
+
+    default void nacked(int count) {
+    }
+
+    default void redelivered() {
+    }
+
+    default void convertFailed() {
+    }
+
+    /**
+     * A message failed its last delivery attempt and was sent to the dead letter subject
+     */
+    default void deadLettered() {
+    }
+
+    /**
+     * Expose active threads and queue depth of the consumer pool
+     */
+    default void monitorExecutor(ThreadPoolExecutor executor) {
+    }
+
+    /**
+     * Expose running tasks of a virtual thread consumer
+     */
+    default void monitorExecutor(VirtualThreadExecutor executor) {
+    }
+
+    /**
+     * Expose queue depth and throughput of every lane of an ordered consumer
+     */
+    default void monitorLanes(OrderedMessageDispatcher dispatcher) {
+    }
+
+    /**
+     * Expose messages buffered by the dispatcher of a push consumer
+     */
+    default void monitorDispatcher(PushListenerContainer container) {
+    }
+
+    /**
+     * Expose concurrency, pull batch size and pending messages of an autoscaled consumer
+     */
+    default void monitorAutoscaler(ConsumerAutoscaler autoscaler) {
+    }
+
+    /**
+     * Stop exposing the monitored instances, the listener container stopped and a restart monitors new ones
+     */
+    default void unmonitor() {
+    }
+
+    /**
+     * The autoscaler made a control step
+     */
+    default void autoscaled(ConsumerAutoscaler.Decision decision) {
+    }
+}
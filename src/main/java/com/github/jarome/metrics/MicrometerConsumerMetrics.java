@@ -0,0 +1,138 @@
+package com.github.jarome.metrics;
+
+import com.github.jarome.config.ConsumerAutoscaler;
+import com.github.jarome.config.OrderedMessageDispatcher;
+import com.github.jarome.config.PushListenerContainer;
+import com.github.jarome.config.VirtualThreadExecutor;
+import io.micrometer.core.instrument.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class MicrometerConsumerMetrics implements ConsumerMetrics {
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final DistributionSummary pullBatchSize;
+    private final Timer pullWait;
+    private final Counter pullEmpty;
+    private final Timer handleSuccess;
+    private final Timer handleFailure;
+    private final Counter ack;
+    private final Counter nak;
+    private final Counter redelivered;
+    private final Counter convertFailed;
+    private final Counter deadLettered;
+    /**
+     * Gauges of the monitored instances, they hold the instance weakly and the registry hands an existing meter back
+     */
+    private final List<Meter> monitors = new CopyOnWriteArrayList<>();
+
+    public MicrometerConsumerMetrics(MeterRegistry registry, Tags tags) {
+        this.registry = registry;
+        this.tags = tags;
+        this.pullBatchSize = DistributionSummary.builder("nats.consumer.pull.batch.size").description("messages asked for by a pull request").tags(tags).publishPercentileHistogram().register(registry);
+        this.pullWait = Timer.builder("nats.consumer.pull.wait").description("time the pull loop waited for a message").tags(tags).publishPercentileHistogram().register(registry);
+        this.pullEmpty = Counter.builder("nats.consumer.pull.empty").description("pull requests expired without a message").tags(tags).register(registry);
+        this.handleSuccess = Timer.builder("nats.consumer.handle").tags(tags).tag("result", "success").register(registry);
+        this.handleFailure = Timer.builder("nats.consumer.handle").tags(tags).tag("result", "failure").register(registry);
+        this.ack = Counter.builder("nats.consumer.ack").tags(tags).register(registry);
+        this.nak = Counter.builder("nats.consumer.nak").tags(tags).register(registry);
+        this.redelivered = Counter.builder("nats.consumer.redelivered").tags(tags).register(registry);
+        this.convertFailed = Counter.builder("nats.consumer.convert.failed").tags(tags).register(registry);
+        this.deadLettered = Counter.builder("nats.consumer.dead.lettered").description("messages sent to the dead letter subject").tags(tags).register(registry);
+    }
+
+    @Override
+    public void pullRequested(int batchSize) {
+        pullBatchSize.record(batchSize);
+    }
+
+    @Override
+    public void pullEmpty() {
+        pullEmpty.increment();
+    }
+
+    @Override
+    public void pullWaited(long nanos) {
+        pullWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handled(long nanos, boolean success) {
+        (success ? handleSuccess : handleFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void acked(int count) {
+        ack.increment(count);
+    }
+
+    @Override
+    public void nacked(int count) {
+        nak.increment(count);
+    }
+
+    @Override
+    public void redelivered() {
+        redelivered.increment();
+    }
+
+    @Override
+    public void convertFailed() {
+        convertFailed.increment();
+    }
+
+    @Override
+    public void deadLettered() {
+        deadLettered.increment();
+    }
+
+    @Override
+    public void monitorExecutor(ThreadPoolExecutor executor) {
+        monitors.add(Gauge.builder("nats.consumer.pool.active", executor, ThreadPoolExecutor::getActiveCount).tags(tags).register(registry));
+        monitors.add(Gauge.builder("nats.consumer.pool.queued", executor, e -> e.getQueue().size()).tags(tags).register(registry));
+        monitors.add(Gauge.builder("nats.consumer.pool.size", executor, ThreadPoolExecutor::getPoolSize).tags(tags).register(registry));
+    }
+
+    @Override
+    public void monitorExecutor(VirtualThreadExecutor executor) {
+        monitors.add(Gauge.builder("nats.consumer.pool.active", executor, VirtualThreadExecutor::getActiveCount).tags(tags).register(registry));
+    }
+
+    @Override
+    public void monitorLanes(OrderedMessageDispatcher dispatcher) {
+        for (int i = 0; i < dispatcher.getLaneCount(); i++) {
+            int lane = i;
+            Tags laneTags = tags.and("lane", String.valueOf(lane));
+            monitors.add(Gauge.builder("nats.consumer.lane.queued", dispatcher, d -> d.getLaneQueueSize(lane)).tags(laneTags).register(registry));
+            monitors.add(FunctionCounter.builder("nats.consumer.lane.completed", dispatcher, d -> d.getLaneCompletedCount(lane)).tags(laneTags).register(registry));
+        }
+    }
+
+    @Override
+    public void monitorDispatcher(PushListenerContainer container) {
+        monitors.add(Gauge.builder("nats.consumer.dispatcher.pending", container, PushListenerContainer::getPendingMessageCount).description("messages buffered by the push dispatcher").tags(tags).register(registry));
+    }
+
+    @Override
+    public void monitorAutoscaler(ConsumerAutoscaler autoscaler) {
+        monitors.add(Gauge.builder("nats.consumer.autoscale.concurrency", autoscaler, ConsumerAutoscaler::getConcurrency).tags(tags).register(registry));
+        monitors.add(Gauge.builder("nats.consumer.autoscale.pull.batch.size", autoscaler, ConsumerAutoscaler::getPullBatchSize).tags(tags).register(registry));
+        monitors.add(Gauge.builder("nats.consumer.pending", autoscaler, ConsumerAutoscaler::getPending).description("messages pending on the server").tags(tags).register(registry));
+        monitors.add(TimeGauge.builder("nats.consumer.autoscale.latency", autoscaler, TimeUnit.NANOSECONDS, ConsumerAutoscaler::getMeanLatencyNanos).tags(tags).register(registry));
+    }
+
+    @Override
+    public void unmonitor() {
+        monitors.forEach(registry::remove);
+        monitors.clear();
+    }
+
+    @Override
+    public void autoscaled(ConsumerAutoscaler.Decision decision) {
+        Counter.builder("nats.consumer.autoscale").tags(tags).tag("decision", decision.name().toLowerCase(Locale.ROOT)).register(registry).increment();
+    }
+}
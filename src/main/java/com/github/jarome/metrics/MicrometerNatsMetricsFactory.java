@@ -0,0 +1,35 @@
+package com.github.jarome.metrics;
+
+import com.github.jarome.config.NatsTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Micrometer backed metrics, the registry is looked up on first use so it may be defined after this factory
+ */
+public class MicrometerNatsMetricsFactory implements NatsMetricsFactory {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public MicrometerNatsMetricsFactory(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ConsumerMetrics consumerMetrics(String stream, String durable, String subject) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return ConsumerMetrics.NOOP;
+        }
+        return new MicrometerConsumerMetrics(registry, Tags.of("stream", stream, "durable", durable, "subject", subject));
+    }
+
+    @Override
+    public PublisherMetrics publisherMetrics(NatsTemplate natsTemplate) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return PublisherMetrics.NOOP;
+        }
+        return new MicrometerPublisherMetrics(registry, natsTemplate);
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.jarome.metrics;
+
+import com.github.jarome.config.NatsTemplate;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+public class MicrometerPublisherMetrics implements PublisherMetrics {
+    private final Timer publishSuccess;
+    private final Timer publishFailure;
+
+    public MicrometerPublisherMetrics(MeterRegistry registry, NatsTemplate natsTemplate) {
+        this.publishSuccess = Timer.builder("nats.publish").description("time from publish to ack").tag("result", "success").publishPercentileHistogram().register(registry);
+        this.publishFailure = Timer.builder("nats.publish").description("time from publish to ack").tag("result", "failure").publishPercentileHistogram().register(registry);
+        Gauge.builder("nats.publish.inflight", natsTemplate, NatsTemplate::getInFlightMessages).description("asynchronous publishes waiting for the ack").register(registry);
+        Gauge.builder("nats.publish.inflight.bytes", natsTemplate, NatsTemplate::getInFlightBytes).description("payload bytes waiting for the ack").register(registry);
+    }
+
+    @Override
+    public void published(long nanos, boolean success) {
+        (success ? publishSuccess : publishFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
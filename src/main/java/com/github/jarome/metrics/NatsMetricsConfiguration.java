@@ -0,0 +1,19 @@
+package com.github.jarome.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+public class NatsMetricsConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public NatsMetricsFactory natsMetricsFactory(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new MicrometerNatsMetricsFactory(meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.jarome.metrics;
+
+import com.github.jarome.config.NatsTemplate;
+
+/**
+ * Creates the metrics of listeners and publishers, {@link #NOOP} when Micrometer is not available
+ */
+public interface NatsMetricsFactory {
+    NatsMetricsFactory NOOP = new NatsMetricsFactory() {
+        @Override
+        public ConsumerMetrics consumerMetrics(String stream, String durable, String subject) {
+            return ConsumerMetrics.NOOP;
+        }
+
+        @Override
+        public PublisherMetrics publisherMetrics(NatsTemplate natsTemplate) {
+            return PublisherMetrics.NOOP;
+        }
+    };
+
+    ConsumerMetrics consumerMetrics(String stream, String durable, String subject);
+
+    PublisherMetrics publisherMetrics(NatsTemplate natsTemplate);
+}
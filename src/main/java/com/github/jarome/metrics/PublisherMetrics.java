@@ -0,0 +1,18 @@
+package com.github.jarome.metrics;
+
+/**
+ * Instrumentation points of {@link com.github.jarome.config.NatsTemplate}, every method defaults to a no-op
+ */
+public interface PublisherMetrics {
+    PublisherMetrics NOOP = new PublisherMetrics() {
+    };
+
+    /**
+     * A publish got its ack or failed
+     *
+     * @param nanos   time from publish to ack
+     * @param success false when the publish failed
+     */
+    default void published(long nanos, boolean success) {
+    }
+}
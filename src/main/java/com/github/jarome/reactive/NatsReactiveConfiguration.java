@@ -0,0 +1,26 @@
+package com.github.jarome.reactive;
+
+import com.github.jarome.config.NatsMessageConverter;
+import com.github.jarome.config.NatsTemplate;
+import io.nats.client.Connection;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(name = "reactor.core.publisher.Flux")
+public class NatsReactiveConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveNatsTemplate reactiveNatsTemplate(NatsTemplate natsTemplate) {
+        return new ReactiveNatsTemplate(natsTemplate);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveNatsConsumerFactory reactiveNatsConsumerFactory(Connection connection, NatsMessageConverter natsMessageConverter) {
+        return new ReactiveNatsConsumerFactory(connection, natsMessageConverter);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.jarome.reactive;
+
+import com.github.jarome.annotation.ReactiveNatsListener;
+import com.github.jarome.config.MessageAcknowledger;
+import com.github.jarome.config.MessageDispatcher;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Subscribes to the Mono of a {@link ReactiveNatsListener} on the fetching thread, no worker pool is involved.
+ * The message is acked when the Mono completes and naked when it fails, then its credit is handed back.
+ */
+public class ReactiveMessageDispatcher implements MessageDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveMessageDispatcher.class);
+
+    private final ReactiveNatsListener<Object> listener;
+    private final Function<Message, Object> converter;
+    private final boolean autoAck;
+    private final MessageAcknowledger acknowledger;
+    private final ConsumerMetrics metrics;
+
+    /**
+     * @param listener     reactive listener
+     * @param converter    reads the listener parameter from a message
+     * @param autoAck      ack when the Mono completes
+     * @param acknowledger acks and naks the message
+     * @param metrics      consumer metrics
+     */
+    public ReactiveMessageDispatcher(ReactiveNatsListener<Object> listener, Function<Message, Object> converter, boolean autoAck,
+                                     MessageAcknowledger acknowledger, ConsumerMetrics metrics) {
+        this.listener = listener;
+        this.converter = converter;
+        this.autoAck = autoAck;
+        this.acknowledger = acknowledger;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void dispatch(Message msg, Runnable done) {
+        long start = System.nanoTime();
+        Mono<Void> result;
+        try {
+            result = listener.onMessage(converter.apply(msg));
+        } catch (RuntimeException e) {
+            result = Mono.error(e);
+        }
+        (result == null ? Mono.<Void>empty() : result).subscribe(null, e -> {
+            metrics.handled(System.nanoTime() - start, false);
+            try {
+                acknowledger.nak(msg, e);
+                metrics.nacked(1);
+                log.error(e.getMessage(), e);
+            } finally {
+                done.run();
+            }
+        }, () -> {
+            metrics.handled(System.nanoTime() - start, true);
+            try {
+                if (autoAck) {
+                    acknowledger.ack(msg);
+                    metrics.acked(1);
+                }
+            } finally {
+                done.run();
+            }
+        });
+    }
+}
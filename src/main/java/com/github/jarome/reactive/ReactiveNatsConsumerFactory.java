@@ -0,0 +1,200 @@
+package com.github.jarome.reactive;
+
+import com.github.jarome.common.exception.NatsException;
+import com.github.jarome.config.NatsMessageConverter;
+import com.github.jarome.config.NatsMessageReader;
+import com.github.jarome.config.PullMessageService;
+import com.github.jarome.config.ThreadFactoryImpl;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.Connection;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.PullSubscribeOptions;
+import io.nats.client.api.AckPolicy;
+import io.nats.client.api.ConsumerConfiguration;
+import io.nats.client.api.ConsumerInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Creates {@link Flux} consumers of durable pull consumers. Pulling is driven by demand: {@code request(n)} of the
+ * subscriber becomes pull requests for n messages (at most {@link #setPullBatchSize(int)} each), nothing is pulled
+ * without demand, so no batch size or interval has to be tuned. The stream must exist.
+ */
+public class ReactiveNatsConsumerFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveNatsConsumerFactory.class);
+    /**
+     * Demand above this is treated as unbounded
+     */
+    private static final long UNBOUNDED = Integer.MAX_VALUE / 2;
+
+    private final Connection connection;
+    private final NatsMessageConverter natsMessageConverter;
+    private int pullBatchSize = 256;
+    private long maxWaitTime = 1000L;
+    private long pullInterval = 1000L;
+
+    public ReactiveNatsConsumerFactory(Connection connection, NatsMessageConverter natsMessageConverter) {
+        this.connection = connection;
+        this.natsMessageConverter = natsMessageConverter;
+    }
+
+    public int getPullBatchSize() {
+        return pullBatchSize;
+    }
+
+    /**
+     * @param pullBatchSize max messages of a single pull request, also the messages kept in flight for unbounded demand
+     */
+    public void setPullBatchSize(int pullBatchSize) {
+        this.pullBatchSize = Math.max(1, pullBatchSize);
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * @param maxWaitTime pull request expiry, ms
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        this.maxWaitTime = Math.max(1L, maxWaitTime);
+    }
+
+    public long getPullInterval() {
+        return pullInterval;
+    }
+
+    /**
+     * @param pullInterval back-off after a failed pull, ms
+     */
+    public void setPullInterval(long pullInterval) {
+        this.pullInterval = Math.max(1L, pullInterval);
+    }
+
+    /**
+     * Converted messages of a durable consumer, the subscriber acks or naks every message once it is processed,
+     * a message that is neither is redelivered after the ack wait. A message that cannot be converted is naked and skipped
+     *
+     * @param stream  stream name
+     * @param durable durable consumer name, created or updated on subscribe
+     * @param subject filter subject
+     * @param type    type of the payload
+     * @param <T>     type of the payload
+     * @return the payloads with their ack
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Flux<ReactiveNatsMessage<T>> receive(String stream, String durable, String subject, Type type) {
+        NatsMessageReader messageReader = new NatsMessageReader(natsMessageConverter, type, null, null);
+        return this.<ReactiveNatsMessage<T>>consume(stream, durable, subject, (msg, sink) -> {
+            T value;
+            try {
+                value = (T) messageReader.read(msg);
+            } catch (Exception e) {
+                msg.nak();
+                log.error("convert failed. str:{}, msgType:{}", new String(msg.getData(), StandardCharsets.UTF_8), type, e);
+                return false;
+            }
+            sink.next(new ReactiveNatsMessage<>(value, msg));
+            return true;
+        });
+    }
+
+    /**
+     * Process the messages of a durable consumer: a message is acked when the Mono of the handler completes
+     * and naked when it fails, so a failure is redelivered
+     *
+     * @param stream      stream name
+     * @param durable     durable consumer name, created or updated on subscribe
+     * @param subject     filter subject
+     * @param type        type of the payload
+     * @param handler     processes a payload
+     * @param concurrency max handler Monos pending, also the messages pulled ahead
+     * @param <T>         type of the payload
+     * @return the payloads processed and acked
+     */
+    public <T> Flux<T> process(String stream, String durable, String subject, Type type, Function<T, Mono<Void>> handler, int concurrency) {
+        return this.<T>receive(stream, durable, subject, type).flatMap(message -> Mono.defer(() -> handler.apply(message.getPayload()))
+                .then(Mono.fromCallable(() -> {
+                    message.ack();
+                    return message.getPayload();
+                }))
+                .onErrorResume(e -> {
+                    log.error("process failed, naked. subject:{}", message.getMessage().getSubject(), e);
+                    message.nak();
+                    return Mono.empty();
+                }), Math.max(1, concurrency));
+    }
+
+    /**
+     * Raw messages of a durable consumer, the subscriber acks them
+     *
+     * @param stream  stream name
+     * @param durable durable consumer name, created or updated on subscribe
+     * @param subject filter subject
+     * @return the messages
+     */
+    public Flux<Message> receiveMessages(String stream, String durable, String subject) {
+        return consume(stream, durable, subject, (msg, sink) -> {
+            sink.next(msg);
+            return true;
+        });
+    }
+
+    /**
+     * @param emitter hands a message to the sink, false when nothing was emitted so the credit goes back
+     */
+    private <T> Flux<T> consume(String stream, String durable, String subject, BiPredicate<Message, FluxSink<T>> emitter) {
+        return Flux.create(sink -> {
+            JetStreamSubscription sub = subscribe(stream, durable, subject);
+            AtomicBoolean unbounded = new AtomicBoolean();
+            PullMessageService pullMessageService = new PullMessageService(sub, pullBatchSize, maxWaitTime, pullInterval, (msg, done) -> {
+                //with bounded demand the credit was the request of the subscriber and is used up by the emission
+                if (!emitter.test(msg, sink) || unbounded.get()) {
+                    done.run();
+                }
+            }, ConsumerMetrics.NOOP);
+            sink.onRequest(n -> {
+                if (n >= UNBOUNDED) {
+                    if (unbounded.compareAndSet(false, true)) {
+                        pullMessageService.addCredits(pullBatchSize);
+                    }
+                } else if (!unbounded.get()) {
+                    pullMessageService.addCredits((int) n);
+                }
+            });
+            Thread pullThread = new ThreadFactoryImpl("NatsReactivePull_" + durable + "_", true).newThread(pullMessageService);
+            sink.onDispose(() -> {
+                pullMessageService.stop();
+                pullThread.interrupt();
+                try {
+                    sub.unsubscribe();
+                } catch (IllegalStateException ignored) {
+                    //the connection is already closed
+                }
+            });
+            pullThread.start();
+        });
+    }
+
+    private JetStreamSubscription subscribe(String stream, String durable, String subject) {
+        try {
+            ConsumerConfiguration cc = ConsumerConfiguration.builder().durable(durable).filterSubject(subject).ackPolicy(AckPolicy.Explicit).build();
+            ConsumerInfo consumerInfo = connection.jetStreamManagement().addOrUpdateConsumer(stream, cc);
+            PullSubscribeOptions so = PullSubscribeOptions.builder().stream(stream).name(consumerInfo.getName()).bind(true).build();
+            return connection.jetStream().subscribe(subject, so);
+        } catch (Exception e) {
+            throw new NatsException("subscribe " + durable + " of stream " + stream + " fail", e);
+        }
+    }
+}
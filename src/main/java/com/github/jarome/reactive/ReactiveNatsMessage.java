@@ -0,0 +1,42 @@
+package com.github.jarome.reactive;
+
+import io.nats.client.Message;
+
+import java.time.Duration;
+
+/**
+ * Converted payload of a {@link ReactiveNatsConsumerFactory#receive} Flux, the subscriber acks it once it is processed
+ * or naks it so it is redelivered
+ */
+public class ReactiveNatsMessage<T> {
+    private final T payload;
+    private final Message message;
+
+    public ReactiveNatsMessage(T payload, Message message) {
+        this.payload = payload;
+        this.message = message;
+    }
+
+    public T getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the raw NATS message
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    public void ack() {
+        message.ack();
+    }
+
+    public void nak() {
+        message.nak();
+    }
+
+    public void nakWithDelay(Duration delay) {
+        message.nakWithDelay(delay);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.jarome.reactive;
+
+import com.github.jarome.config.NatsTemplate;
+import io.nats.client.api.PublishAck;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive view of {@link NatsTemplate}, every publish goes through {@link NatsTemplate#publishAsync},
+ * so the publish window, retries and callbacks of the template apply
+ */
+public class ReactiveNatsTemplate {
+    /**
+     * Default max publishes of a stream waiting for their ack
+     */
+    public static final int DEFAULT_CONCURRENCY = 256;
+
+    private final NatsTemplate natsTemplate;
+
+    public ReactiveNatsTemplate(NatsTemplate natsTemplate) {
+        this.natsTemplate = natsTemplate;
+    }
+
+    public NatsTemplate getNatsTemplate() {
+        return natsTemplate;
+    }
+
+    /**
+     * Publish when subscribed
+     *
+     * @param subject the subject to send the message to
+     * @param body    String, byte[] or an object converted by the default codec
+     * @return the ack
+     */
+    public Mono<PublishAck> publish(String subject, Object body) {
+        return Mono.fromFuture(() -> natsTemplate.publishAsync(subject, body));
+    }
+
+    /**
+     * @param subject the subject to send the message to
+     * @param body    the message body
+     * @param msgId   Nats-Msg-Id for deduplication, may be null
+     * @param codec   content type of the codec, null for the default conversion
+     * @return the ack
+     */
+    public Mono<PublishAck> publish(String subject, Object body, String msgId, String codec) {
+        return Mono.fromFuture(() -> natsTemplate.publishAsync(subject, body, msgId, codec));
+    }
+
+    /**
+     * Publish every body with at most {@link #DEFAULT_CONCURRENCY} acks outstanding
+     *
+     * @param subject the subject to send the messages to
+     * @param bodies  message bodies
+     * @return the acks, in the order of the bodies
+     */
+    public Flux<PublishAck> publish(String subject, Publisher<?> bodies) {
+        return publish(subject, bodies, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Publish every body with at most {@code concurrency} acks outstanding, bodies are requested
+     * only as acks come back
+     *
+     * @param subject     the subject to send the messages to
+     * @param bodies      message bodies
+     * @param concurrency max publishes waiting for their ack
+     * @return the acks, in the order of the bodies
+     */
+    public Flux<PublishAck> publish(String subject, Publisher<?> bodies, int concurrency) {
+        return Flux.from(bodies).flatMapSequential(body -> publish(subject, body), Math.max(1, concurrency));
+    }
+}
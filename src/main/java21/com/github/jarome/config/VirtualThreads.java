@@ -0,0 +1,27 @@
+package com.github.jarome.config;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads, Java 21 version
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether virtual threads are available
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @param threadNamePrefix prefix of the thread names
+     * @return factory of virtual threads
+     */
+    public static ThreadFactory newThreadFactory(String threadNamePrefix) {
+        return Thread.ofVirtual().name(threadNamePrefix, 1L).factory();
+    }
+}
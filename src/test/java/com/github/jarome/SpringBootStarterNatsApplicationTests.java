@@ -1,13 +1,44 @@
 package com.github.jarome;
 
+import com.github.jarome.config.NatsTemplate;
+import io.nats.client.Connection;
+import io.nats.client.JetStream;
+import io.nats.client.Options;
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
-@SpringBootTest
 class SpringBootStarterNatsApplicationTests {
 
+    /**
+     * The starter has no application class, the auto-configuration is loaded the way an application would load it
+     */
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(NatsAutoConfiguration.class))
+            .withBean("natsConnection", Connection.class, SpringBootStarterNatsApplicationTests::connection);
+
+    private static Connection connection() {
+        Connection connection = mock(Connection.class);
+        try {
+            when(connection.jetStream()).thenReturn(mock(JetStream.class));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        when(connection.getOptions()).thenReturn(Options.builder().build());
+        when(connection.getStatus()).thenReturn(Connection.Status.CONNECTED);
+        return connection;
+    }
+
     @Test
     void contextLoads() {
+        contextRunner.run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).hasSingleBean(NatsTemplate.class);
+        });
     }
 
 }
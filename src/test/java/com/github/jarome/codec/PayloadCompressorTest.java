@@ -0,0 +1,87 @@
+package com.github.jarome.codec;
+
+import com.github.jarome.common.exception.NatsException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PayloadCompressorTest {
+
+    private static final List<PayloadCompressor> COMPRESSORS = Arrays.asList(new GzipCompressor(), new Lz4Compressor(), new ZstdCompressor());
+
+    private static byte[] payload(int size) {
+        //half repeated text, half noise, so both the compressible and the raw paths are exercised
+        byte[] payload = new byte[size];
+        byte[] text = "{\"order\":\"created\"}".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < size / 2; i++) {
+            payload[i] = text[i % text.length];
+        }
+        byte[] noise = new byte[size - size / 2];
+        new Random(42).nextBytes(noise);
+        System.arraycopy(noise, 0, payload, size / 2, noise.length);
+        return payload;
+    }
+
+    @Test
+    void roundTrips() {
+        for (PayloadCompressor compressor : COMPRESSORS) {
+            for (int size : new int[]{0, 1, 100, 64 * 1024, 1024 * 1024}) {
+                byte[] payload = payload(size);
+                assertThat(compressor.decompress(compressor.compress(payload)))
+                        .as("%s of %d bytes", compressor.getEncoding(), size)
+                        .isEqualTo(payload);
+            }
+        }
+    }
+
+    @Test
+    void payloadAboveTheMaxSizeIsRejected() {
+        byte[] payload = payload(1024);
+        List<PayloadCompressor> small = Arrays.asList(new GzipCompressor(1, 512), new Lz4Compressor(512), new ZstdCompressor(3, 512));
+        for (int i = 0; i < small.size(); i++) {
+            byte[] compressed = COMPRESSORS.get(i).compress(payload);
+            PayloadCompressor compressor = small.get(i);
+            assertThatThrownBy(() -> compressor.decompress(compressed))
+                    .as(compressor.getEncoding())
+                    .isInstanceOf(NatsException.class);
+        }
+    }
+
+    @Test
+    void gzipReadsForeignHeaders() throws Exception {
+        byte[] payload = payload(10 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        }
+        byte[] compressed = out.toByteArray();
+        //set FNAME with an empty name, the way a producer writing file names would
+        byte[] named = new byte[compressed.length + 1];
+        System.arraycopy(compressed, 0, named, 0, 10);
+        named[3] = 0x08;
+        System.arraycopy(compressed, 10, named, 11, compressed.length - 10);
+
+        assertThat(new GzipCompressor().decompress(compressed)).isEqualTo(payload);
+        assertThat(new GzipCompressor().decompress(named)).isEqualTo(payload);
+        assertThatThrownBy(() -> new GzipCompressor(1, 1024).decompress(named)).isInstanceOf(NatsException.class);
+    }
+
+    @Test
+    void corruptPayloadIsRejected() {
+        for (PayloadCompressor compressor : COMPRESSORS) {
+            byte[] compressed = compressor.compress(payload(1024));
+            byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+            assertThatThrownBy(() -> compressor.decompress(truncated))
+                    .as(compressor.getEncoding())
+                    .isInstanceOf(NatsException.class);
+        }
+    }
+}
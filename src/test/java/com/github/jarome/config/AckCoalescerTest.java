@@ -0,0 +1,192 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+import io.nats.client.impl.NatsJetStreamMetaData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AckCoalescerTest {
+
+    private static Message message(long streamSequence, long deliveredCount) {
+        Message msg = mock(Message.class);
+        NatsJetStreamMetaData metaData = mock(NatsJetStreamMetaData.class);
+        when(metaData.streamSequence()).thenReturn(streamSequence);
+        when(metaData.deliveredCount()).thenReturn(deliveredCount);
+        when(msg.metaData()).thenReturn(metaData);
+        return msg;
+    }
+
+    @Test
+    void explicitFlushAcksEveryHandledMessage() {
+        AckCoalescer coalescer = new AckCoalescer(10, 5, false);
+        Message first = message(1, 1);
+        Message second = message(2, 1);
+        Message third = message(3, 1);
+        coalescer.delivered(first);
+        coalescer.delivered(second);
+        coalescer.delivered(third);
+        coalescer.ack(third);
+        coalescer.ack(first);
+        assertThat(coalescer.getPendingAcks()).isEqualTo(2);
+        verify(first, never()).ack();
+
+        coalescer.flush();
+        //no hold back: a slow message does not delay the acks of the others
+        verify(first).ack();
+        verify(third).ack();
+        verify(second, never()).ack();
+        assertThat(coalescer.getPendingAcks()).isZero();
+    }
+
+    @Test
+    void flushesWhenTheBatchIsFull() {
+        AckCoalescer coalescer = new AckCoalescer(2, 5, false);
+        Message first = message(1, 1);
+        Message second = message(2, 1);
+        coalescer.ack(first);
+        verify(first, never()).ack();
+        coalescer.ack(second);
+        verify(first).ack();
+        verify(second).ack();
+    }
+
+    @Test
+    void cumulativeFlushAcksBelowTheOldestMessageInProgress() {
+        AckCoalescer coalescer = new AckCoalescer(10, 5, true);
+        Message first = message(1, 1);
+        Message second = message(2, 1);
+        Message third = message(3, 1);
+        Message fourth = message(4, 1);
+        coalescer.delivered(first);
+        coalescer.delivered(second);
+        coalescer.delivered(third);
+        coalescer.delivered(fourth);
+        coalescer.ack(first);
+        coalescer.ack(third);
+        coalescer.ack(fourth);
+
+        coalescer.flush();
+        //second is still in progress, an ack of 3 or 4 would cover it
+        verify(first).ack();
+        verify(third, never()).ack();
+        verify(fourth, never()).ack();
+        assertThat(coalescer.getPendingAcks()).isEqualTo(2);
+
+        coalescer.ack(second);
+        coalescer.flush();
+        verify(fourth).ack();
+        verify(second, never()).ack();
+        verify(third, never()).ack();
+        assertThat(coalescer.getPendingAcks()).isZero();
+    }
+
+    @Test
+    void cumulativeHoldsTheAckWhileAFailedMessageIsRedelivered() {
+        AckCoalescer coalescer = new AckCoalescer(10, 3, true);
+        Message failed = message(1, 1);
+        Message handled = message(2, 1);
+        coalescer.delivered(failed);
+        coalescer.delivered(handled);
+        coalescer.nakWithDelay(failed, Duration.ofSeconds(1));
+        coalescer.ack(handled);
+
+        coalescer.flush();
+        verify(failed).nakWithDelay(Duration.ofSeconds(1));
+        verify(handled, never()).ack();
+    }
+
+    @Test
+    void cumulativeReleasesTheAckAfterTheLastAttempt() {
+        AckCoalescer coalescer = new AckCoalescer(10, 3, true);
+        Message failed = message(1, 3);
+        Message handled = message(2, 1);
+        coalescer.delivered(failed);
+        coalescer.delivered(handled);
+        coalescer.nak(failed);
+        coalescer.ack(handled);
+
+        coalescer.flush();
+        //the server never delivers the failed message again
+        verify(failed).nak();
+        verify(handled).ack();
+    }
+
+    @Test
+    void heldBackAcksFlushOnceTheyBecomeSendable() {
+        AckCoalescer coalescer = new AckCoalescer(2, 3, true);
+        Message slow = message(1, 1);
+        Message second = message(2, 1);
+        Message third = message(3, 1);
+        Message fourth = message(4, 1);
+        coalescer.delivered(slow);
+        coalescer.delivered(second);
+        coalescer.delivered(third);
+        coalescer.delivered(fourth);
+        coalescer.ack(second);
+        coalescer.ack(third);
+        coalescer.ack(fourth);
+        //the batch is full but nothing is sendable while the first message is in progress
+        verify(second, never()).ack();
+        verify(third, never()).ack();
+        verify(fourth, never()).ack();
+        assertThat(coalescer.getPendingAcks()).isEqualTo(3);
+
+        coalescer.ack(slow);
+        verify(fourth).ack();
+        verify(slow, never()).ack();
+        assertThat(coalescer.getPendingAcks()).isZero();
+    }
+
+    @Test
+    void lastAttemptOfAPoisonMessageReleasesTheHeldBackAcks() {
+        AckCoalescer coalescer = new AckCoalescer(2, 2, true);
+        Message poison = message(1, 1);
+        Message second = message(2, 1);
+        Message third = message(3, 1);
+        coalescer.delivered(poison);
+        coalescer.delivered(second);
+        coalescer.delivered(third);
+        coalescer.ack(second);
+        coalescer.ack(third);
+        coalescer.nak(poison);
+        verify(third, never()).ack();
+
+        Message redelivered = message(1, 2);
+        coalescer.delivered(redelivered);
+        coalescer.nak(redelivered);
+        verify(third).ack();
+        verify(second, never()).ack();
+    }
+
+    @Test
+    void handledMessagesBetweenTwoInProgressAreKeptOnce() {
+        AckCoalescer coalescer = new AckCoalescer(100, 3, true);
+        Message first = message(1, 1);
+        coalescer.delivered(first);
+        Message[] later = new Message[50];
+        for (int i = 0; i < later.length; i++) {
+            later[i] = message(i + 2, 1);
+            coalescer.delivered(later[i]);
+        }
+        for (Message msg : later) {
+            coalescer.ack(msg);
+        }
+        assertThat(coalescer.getPendingAcks()).isEqualTo(50);
+
+        coalescer.ack(first);
+        coalescer.flush();
+        //one ack of the highest covers the whole run
+        verify(later[49]).ack();
+        for (int i = 0; i < 49; i++) {
+            verify(later[i], never()).ack();
+        }
+        assertThat(coalescer.getPendingAcks()).isZero();
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.jarome.config;
+
+import com.github.jarome.annotation.NatsBatchListener;
+import com.github.jarome.common.exception.NatsBatchException;
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchMessageDispatcherTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final NatsMessageReader reader = new NatsMessageReader(new NatsMessageConverter(), String.class, null, null);
+    private final RecordingAcknowledger acknowledger = new RecordingAcknowledger();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static Message message(String data) {
+        return NatsMessage.builder().subject("orders").data(data).build();
+    }
+
+    @Test
+    void fullBatchIsHandedOverAtOnce() {
+        List<List<Message>> batches = new ArrayList<>();
+        AtomicInteger done = new AtomicInteger();
+        BatchMessageDispatcher dispatcher = new BatchMessageDispatcher(Runnable::run, scheduler, 2, 60_000L, batches::add);
+        dispatcher.dispatch(message("a"), done::incrementAndGet);
+        assertThat(batches).isEmpty();
+        dispatcher.dispatch(message("b"), done::incrementAndGet);
+        dispatcher.dispatch(message("c"), done::incrementAndGet);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).hasSize(2);
+        assertThat(done).hasValue(2);
+    }
+
+    @Test
+    void partialBatchIsHandedOverAfterTheLingerTime() throws Exception {
+        List<List<Message>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch handled = new CountDownLatch(1);
+        BatchMessageDispatcher dispatcher = new BatchMessageDispatcher(Runnable::run, scheduler, 10, 50L, batch -> {
+            batches.add(batch);
+            handled.countDown();
+        });
+        dispatcher.dispatch(message("a"), () -> {
+        });
+
+        assertThat(handled.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(batches.get(0)).hasSize(1);
+    }
+
+    @Test
+    void onlyTheFailedIndexesAreNaked() {
+        NatsBatchListener<Object> listener = payloads -> {
+            throw new NatsBatchException("second failed", Collections.singletonList(1));
+        };
+        List<Message> messages = Arrays.asList(message("a"), message("b"), message("c"));
+        dispatch(messages, listener);
+
+        assertThat(acknowledger.acked).containsExactly(messages.get(0), messages.get(2));
+        assertThat(acknowledger.naked).containsExactly(messages.get(1));
+    }
+
+    @Test
+    void failedIndexesReferToTheConvertedMessages() {
+        List<Object> received = new ArrayList<>();
+        NatsBatchListener<Object> listener = payloads -> {
+            received.addAll(payloads);
+            throw new NatsBatchException("first failed", Collections.singletonList(0));
+        };
+        NatsMessageReader failingReader = new NatsMessageReader(new NatsMessageConverter(), String.class, null, null) {
+            @Override
+            public Object read(Message msg) throws Exception {
+                if ("bad".equals(new String(msg.getData(), StandardCharsets.UTF_8))) {
+                    throw new IllegalArgumentException("bad payload");
+                }
+                return super.read(msg);
+            }
+        };
+        List<Message> messages = Arrays.asList(message("bad"), message("a"), message("b"));
+        BatchMessageDispatcher dispatcher = new BatchMessageDispatcher(Runnable::run, scheduler, 3, 60_000L,
+                batch -> NatsConsumerConfig.invokeBatch(listener, true, batch, failingReader, acknowledger, ConsumerMetrics.NOOP));
+        messages.forEach(msg -> dispatcher.dispatch(msg, () -> {
+        }));
+
+        //the message that could not be read is not in the listener list, index 0 is "a"
+        assertThat(received).containsExactly("a", "b");
+        assertThat(acknowledger.naked).containsExactly(messages.get(0), messages.get(1));
+        assertThat(acknowledger.acked).containsExactly(messages.get(2));
+    }
+
+    @Test
+    void anyOtherFailureNaksTheWholeBatch() {
+        NatsBatchListener<Object> listener = payloads -> {
+            throw new IllegalStateException("down");
+        };
+        List<Message> messages = Arrays.asList(message("a"), message("b"));
+        dispatch(messages, listener);
+
+        assertThat(acknowledger.acked).isEmpty();
+        assertThat(acknowledger.naked).containsExactlyElementsOf(messages);
+    }
+
+    private void dispatch(List<Message> messages, NatsBatchListener<Object> listener) {
+        AtomicInteger done = new AtomicInteger();
+        BatchMessageDispatcher dispatcher = new BatchMessageDispatcher(Runnable::run, scheduler, messages.size(), 60_000L,
+                batch -> NatsConsumerConfig.invokeBatch(listener, true, batch, reader, acknowledger, ConsumerMetrics.NOOP));
+        messages.forEach(msg -> dispatcher.dispatch(msg, done::incrementAndGet));
+        //every message hands its credit back, failed or not
+        assertThat(done).hasValue(messages.size());
+    }
+
+    private static class RecordingAcknowledger implements MessageAcknowledger {
+        private final List<Message> acked = new CopyOnWriteArrayList<>();
+        private final List<Message> naked = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void ack(Message msg) {
+            acked.add(msg);
+        }
+
+        @Override
+        public void nak(Message msg) {
+            naked.add(msg);
+        }
+
+        @Override
+        public void nakWithDelay(Message msg, Duration delay) {
+            naked.add(msg);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+import io.nats.client.api.RetentionPolicy;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NatsConsumerConfigTest {
+
+    private static ListenerSettings settings(boolean coalesceAcks) {
+        ListenerSettings settings = new ListenerSettings();
+        settings.coalesceAcks = coalesceAcks;
+        return settings;
+    }
+
+    @Test
+    void cumulativeOnlyWhenCoalescing() {
+        assertThat(NatsConsumerConfig.useCumulativeAcks("listener", settings(true), 5, RetentionPolicy.Limits)).isTrue();
+        assertThat(NatsConsumerConfig.useCumulativeAcks("listener", settings(true), 5, RetentionPolicy.Interest)).isTrue();
+        assertThat(NatsConsumerConfig.useCumulativeAcks("listener", settings(false), -1, RetentionPolicy.Limits)).isFalse();
+    }
+
+    @Test
+    void workQueueStreamFallsBackToExplicitAcks() {
+        //the server refuses AckPolicy.All on a WorkQueue stream, the default retention of the starter
+        assertThat(NatsConsumerConfig.useCumulativeAcks("listener", settings(true), 5, RetentionPolicy.WorkQueue)).isFalse();
+    }
+
+    @Test
+    void cumulativeNeedsMaxDeliver() {
+        //unlimited redelivery of a poison message would hold the ack of every later message back forever
+        assertThatThrownBy(() -> NatsConsumerConfig.useCumulativeAcks("listener", settings(true), -1, RetentionPolicy.Limits))
+                .isInstanceOf(NatsException.class);
+        assertThat(NatsConsumerConfig.useCumulativeAcks("listener", settings(true), -1, RetentionPolicy.WorkQueue)).isFalse();
+    }
+}
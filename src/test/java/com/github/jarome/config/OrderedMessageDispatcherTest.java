@@ -0,0 +1,121 @@
+package com.github.jarome.config;
+
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderedMessageDispatcherTest {
+
+    private static final String KEY_HEADER = "Order-Key";
+
+    private OrderedMessageDispatcher dispatcher;
+
+    @AfterEach
+    void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private static Message message(String key, int sequence) {
+        Headers headers = key == null ? null : new Headers().put(KEY_HEADER, key);
+        return NatsMessage.builder().subject("orders").headers(headers).data(String.valueOf(sequence)).build();
+    }
+
+    private static String keyOf(Message msg) {
+        return msg.hasHeaders() ? msg.getHeaders().getFirst(KEY_HEADER) : null;
+    }
+
+    @Test
+    void messagesOfAKeyRunInOrderOnOneLane() throws Exception {
+        int perKey = 200;
+        String[] keys = {"a", "b", "c", "d", "e"};
+        Map<String, List<Integer>> handledByKey = new ConcurrentHashMap<>();
+        Map<String, Set<String>> threadsByKey = new ConcurrentHashMap<>();
+        CountDownLatch handled = new CountDownLatch(perKey * keys.length);
+        dispatcher = new OrderedMessageDispatcher("test", 3, 1000, OrderedMessageDispatcherTest::keyOf, msg -> {
+            String key = keyOf(msg);
+            //one thread per key, the list of a key is never written concurrently
+            handledByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(Integer.parseInt(new String(msg.getData(), StandardCharsets.UTF_8)));
+            threadsByKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+        });
+        for (int i = 0; i < perKey; i++) {
+            for (String key : keys) {
+                dispatcher.dispatch(message(key, i), handled::countDown);
+            }
+        }
+
+        assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+        for (String key : keys) {
+            List<Integer> sequences = handledByKey.get(key);
+            assertThat(sequences).hasSize(perKey).isSorted();
+            assertThat(threadsByKey.get(key)).hasSize(1);
+        }
+    }
+
+    @Test
+    void messagesWithoutKeyAreSpreadOverTheLanes() throws Exception {
+        CountDownLatch handled = new CountDownLatch(9);
+        dispatcher = new OrderedMessageDispatcher("test", 3, 10, OrderedMessageDispatcherTest::keyOf, msg -> {
+        });
+        for (int i = 0; i < 9; i++) {
+            dispatcher.dispatch(message(null, i), handled::countDown);
+        }
+
+        assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+        //the completed count is updated after the done callback, wait for the last task of every lane
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (completed() < 9 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        for (int lane = 0; lane < dispatcher.getLaneCount(); lane++) {
+            assertThat(dispatcher.getLaneCompletedCount(lane)).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void busyKeyDoesNotBlockTheOtherLanes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherHandled = new CountDownLatch(1);
+        //two lanes: "a" and "b" land on different lanes since their hash codes differ by one
+        dispatcher = new OrderedMessageDispatcher("test", 2, 10, OrderedMessageDispatcherTest::keyOf, msg -> {
+            if ("a".equals(keyOf(msg))) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                otherHandled.countDown();
+            }
+        });
+        dispatcher.dispatch(message("a", 0), () -> {
+        });
+        dispatcher.dispatch(message("b", 0), () -> {
+        });
+
+        assertThat(otherHandled.await(2, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+    }
+
+    private long completed() {
+        long completed = 0;
+        for (int lane = 0; lane < dispatcher.getLaneCount(); lane++) {
+            completed += dispatcher.getLaneCompletedCount(lane);
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.jarome.config;
+
+import com.github.jarome.common.exception.NatsException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PublishWindowTest {
+
+    @Test
+    void failsAtOnceWhenFullAndNotBlocking() {
+        PublishWindow window = new PublishWindow(2, 0, false, 1000L);
+        window.acquire(10);
+        window.acquire(10);
+        assertThatThrownBy(() -> window.acquire(10)).isInstanceOf(NatsException.class);
+        assertThat(window.getMessages()).isEqualTo(2);
+        assertThat(window.getBytes()).isEqualTo(20);
+
+        window.release(10);
+        window.acquire(10);
+        assertThat(window.getMessages()).isEqualTo(2);
+    }
+
+    @Test
+    void bytesBoundTheWindowButLetAnOversizedMessageThroughAlone() {
+        PublishWindow window = new PublishWindow(0, 100, false, 0L);
+        window.acquire(500);
+        assertThatThrownBy(() -> window.acquire(1)).isInstanceOf(NatsException.class);
+        window.release(500);
+
+        window.acquire(60);
+        assertThatThrownBy(() -> window.acquire(60)).isInstanceOf(NatsException.class);
+        window.acquire(40);
+        assertThat(window.getBytes()).isEqualTo(100);
+    }
+
+    @Test
+    void blockedPublishGoesOnWhenRoomIsReleased() throws Exception {
+        PublishWindow window = new PublishWindow(1, 0, true, 5000L);
+        window.acquire(10);
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> window.acquire(20));
+        Thread.sleep(100);
+        assertThat(blocked).isNotDone();
+
+        window.release(10);
+        blocked.get(1, TimeUnit.SECONDS);
+        assertThat(window.getMessages()).isEqualTo(1);
+        assertThat(window.getBytes()).isEqualTo(20);
+    }
+
+    @Test
+    void blockedPublishTimesOut() {
+        PublishWindow window = new PublishWindow(1, 0, true, 50L);
+        window.acquire(10);
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> window.acquire(10)).isInstanceOf(NatsException.class);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
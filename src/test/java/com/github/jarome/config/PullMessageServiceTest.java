@@ -0,0 +1,144 @@
+package com.github.jarome.config;
+
+import com.github.jarome.metrics.ConsumerMetrics;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class PullMessageServiceTest {
+
+    private final JetStreamSubscription subscription = mock(JetStreamSubscription.class);
+    /**
+     * Messages the server delivers, nextMessage waits for them like the subscription
+     */
+    private final BlockingQueue<Message> delivered = new LinkedBlockingQueue<>();
+    /**
+     * Done callbacks of the dispatched messages, run to hand a credit back
+     */
+    private final List<Runnable> handling = new CopyOnWriteArrayList<>();
+    private PullMessageService service;
+    private Thread thread;
+
+    private void start(int capacity, int pullBatchSize, long maxWaitTime) throws InterruptedException {
+        doAnswer(invocation -> delivered.poll(invocation.<Duration>getArgument(0).toNanos(), TimeUnit.NANOSECONDS))
+                .when(subscription).nextMessage(any(Duration.class));
+        service = new PullMessageService(subscription, capacity, pullBatchSize, maxWaitTime, 10L, 0L,
+                (msg, done) -> handling.add(done), ConsumerMetrics.NOOP);
+        thread = new Thread(service);
+        thread.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (service != null) {
+            service.stop();
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    private static Message message() {
+        return NatsMessage.builder().subject("orders").data("order").build();
+    }
+
+    @Test
+    void pullsNoMoreThanTheCapacity() throws Exception {
+        start(2, 10, 10_000L);
+        verify(subscription, timeout(1000)).pullExpiresIn(eq(2), any(Duration.class));
+
+        delivered.add(message());
+        delivered.add(message());
+        awaitHandling(2);
+        //both credits are taken by the messages being handled
+        Thread.sleep(100);
+        verify(subscription).pullExpiresIn(anyInt(), any(Duration.class));
+
+        handling.get(0).run();
+        verify(subscription, timeout(1000)).pullExpiresIn(eq(1), any(Duration.class));
+    }
+
+    @Test
+    void expiredPullHandsItsCreditsBack() throws Exception {
+        start(2, 2, 50L);
+        //nothing delivered: every expired request gives its credits to the next one
+        verify(subscription, timeout(1000).atLeast(3)).pullExpiresIn(eq(2), any(Duration.class));
+        assertThat(handling).isEmpty();
+    }
+
+    @Test
+    void lateMessageOfAnExpiredPullIsDispatched() throws Exception {
+        doAnswer(invocation -> {
+            //delivered once the request expired, before the loop noticed
+            Thread.sleep(100);
+            return message();
+        }).doAnswer(invocation -> delivered.poll(invocation.<Duration>getArgument(0).toNanos(), TimeUnit.NANOSECONDS))
+                .when(subscription).nextMessage(any(Duration.class));
+        service = new PullMessageService(subscription, 2, 2, 50L, 10L, 0L, (msg, done) -> handling.add(done), ConsumerMetrics.NOOP);
+        thread = new Thread(service);
+        thread.start();
+
+        awaitHandling(1);
+        //the late message holds one credit, the other one is pulled again
+        verify(subscription, timeout(1000).atLeastOnce()).pullExpiresIn(eq(1), any(Duration.class));
+        handling.get(0).run();
+        verify(subscription, timeout(1000).atLeastOnce()).pullExpiresIn(eq(2), any(Duration.class));
+    }
+
+    @Test
+    void setCapacityResizesTheCredits() throws Exception {
+        start(1, 10, 100L);
+        verify(subscription, timeout(1000)).pullExpiresIn(eq(1), any(Duration.class));
+
+        service.setCapacity(4);
+        assertThat(service.getPullBatchSize()).isEqualTo(4);
+        //the next request asks for every credit
+        verify(subscription, timeout(1000)).pullExpiresIn(eq(4), any(Duration.class));
+
+        service.setCapacity(2);
+        assertThat(service.getPullBatchSize()).isEqualTo(2);
+        verify(subscription, timeout(1000).atLeastOnce()).pullExpiresIn(eq(2), any(Duration.class));
+    }
+
+    @Test
+    void pausedLoopSendsNoPullRequests() throws Exception {
+        start(2, 2, 50L);
+        verify(subscription, timeout(1000)).pullExpiresIn(eq(2), any(Duration.class));
+        service.pause();
+        //let the outstanding request expire
+        Thread.sleep(150);
+        clearInvocations(subscription);
+        Thread.sleep(150);
+        verify(subscription, never()).pullExpiresIn(anyInt(), any(Duration.class));
+
+        service.resume();
+        verify(subscription, timeout(1000).atLeastOnce()).pullExpiresIn(eq(2), any(Duration.class));
+    }
+
+    private void awaitHandling(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (handling.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(handling).hasSize(count);
+    }
+}
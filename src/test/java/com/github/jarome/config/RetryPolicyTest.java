@@ -0,0 +1,53 @@
+package com.github.jarome.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+
+    @Test
+    void exponentialDelayIsCappedAtTheMaxDelay() {
+        RetryPolicy policy = new RetryPolicy(100L, 2.0, 1000L, new long[0], 10L);
+        assertThat(policy.getDelay(1)).isEqualTo(Duration.ofMillis(100));
+        assertThat(policy.getDelay(2)).isEqualTo(Duration.ofMillis(200));
+        assertThat(policy.getDelay(4)).isEqualTo(Duration.ofMillis(800));
+        assertThat(policy.getDelay(5)).isEqualTo(Duration.ofMillis(1000));
+        assertThat(policy.getDelay(Long.MAX_VALUE)).isEqualTo(Duration.ofMillis(1000));
+        assertThat(policy.isImmediate()).isFalse();
+    }
+
+    @Test
+    void backoffTiersTakePrecedenceAndTheLastOneRepeats() {
+        RetryPolicy policy = new RetryPolicy(100L, 2.0, 1000L, new long[]{50L, 500L, 5000L}, 10L);
+        assertThat(policy.getDelay(1)).isEqualTo(Duration.ofMillis(50));
+        assertThat(policy.getDelay(2)).isEqualTo(Duration.ofMillis(500));
+        assertThat(policy.getDelay(3)).isEqualTo(Duration.ofMillis(5000));
+        assertThat(policy.getDelay(7)).isEqualTo(Duration.ofMillis(5000));
+    }
+
+    @Test
+    void noDelayIsAnImmediateRedelivery() {
+        RetryPolicy policy = new RetryPolicy(0L, 2.0, 1000L, null, 0L);
+        assertThat(policy.isImmediate()).isTrue();
+        assertThat(policy.getDelay(3)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void invalidSettingsAreClamped() {
+        //a multiplier below 1 would shrink the delay, a max below the initial delay would cut it
+        RetryPolicy policy = new RetryPolicy(100L, 0.5, 10L, null, 0L);
+        assertThat(policy.getDelay(1)).isEqualTo(Duration.ofMillis(100));
+        assertThat(policy.getDelay(3)).isEqualTo(Duration.ofMillis(100));
+        assertThat(policy.getDelay(0)).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void lastAttemptNeedsMaxDeliver() {
+        assertThat(new RetryPolicy(0L, 1.0, 0L, null, 3L).isLastAttempt(2)).isFalse();
+        assertThat(new RetryPolicy(0L, 1.0, 0L, null, 3L).isLastAttempt(3)).isTrue();
+        assertThat(new RetryPolicy(0L, 1.0, 0L, null, -1L).isLastAttempt(100)).isFalse();
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.jarome.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamPropertiesTest {
+
+    @Test
+    void coversLiteralSubjects() {
+        assertThat(StreamProperties.covers("orders.created", "orders.created")).isTrue();
+        assertThat(StreamProperties.covers("orders.created", "orders.deleted")).isFalse();
+        assertThat(StreamProperties.covers("orders", "orders.created")).isFalse();
+        assertThat(StreamProperties.covers("orders.created", "orders")).isFalse();
+    }
+
+    @Test
+    void coversSingleTokenWildcards() {
+        assertThat(StreamProperties.covers("orders.*", "orders.created")).isTrue();
+        assertThat(StreamProperties.covers("orders.*", "orders.*")).isTrue();
+        assertThat(StreamProperties.covers("*.created", "orders.created")).isTrue();
+        assertThat(StreamProperties.covers("orders.*", "orders.eu.created")).isFalse();
+        assertThat(StreamProperties.covers("orders.created", "orders.*")).isFalse();
+        //orders.* does not match orders.eu.created, which orders.> does
+        assertThat(StreamProperties.covers("orders.*", "orders.>")).isFalse();
+    }
+
+    @Test
+    void coversFullWildcards() {
+        assertThat(StreamProperties.covers("orders.>", "orders.created")).isTrue();
+        assertThat(StreamProperties.covers("orders.>", "orders.eu.created")).isTrue();
+        assertThat(StreamProperties.covers("orders.>", "orders.*")).isTrue();
+        assertThat(StreamProperties.covers("orders.>", "orders.>")).isTrue();
+        assertThat(StreamProperties.covers("orders.>", "orders")).isFalse();
+        assertThat(StreamProperties.covers(">", "orders.created")).isTrue();
+    }
+
+    @Test
+    void withoutOverlapsDropsCoveredSubjects() {
+        assertThat(StreamProperties.withoutOverlaps(Arrays.asList("orders.created", "orders.>", "payments.*", "payments.done", "orders.created")))
+                .containsExactly("orders.>", "payments.*");
+        assertThat(StreamProperties.withoutOverlaps(Arrays.asList("orders.created", "orders.deleted", "orders.created")))
+                .containsExactly("orders.created", "orders.deleted");
+    }
+}
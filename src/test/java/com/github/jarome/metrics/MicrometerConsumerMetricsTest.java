@@ -0,0 +1,52 @@
+package com.github.jarome.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicrometerConsumerMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Tags tags = Tags.of("stream", "orders", "durable", "orders-durable", "subject", "orders.*");
+
+    private static ThreadPoolExecutor executor(int coreSize) {
+        return new ThreadPoolExecutor(coreSize, coreSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    @Test
+    void restartedContainerReportsItsNewInstances() {
+        ThreadPoolExecutor stopped = executor(2);
+        ThreadPoolExecutor restarted = executor(5);
+        try {
+            stopped.prestartAllCoreThreads();
+            restarted.prestartAllCoreThreads();
+            MicrometerConsumerMetrics before = new MicrometerConsumerMetrics(registry, tags);
+            before.monitorExecutor(stopped);
+            assertThat(registry.get("nats.consumer.pool.size").gauge().value()).isEqualTo(2);
+
+            before.unmonitor();
+            assertThat(registry.find("nats.consumer.pool.size").gauge()).isNull();
+            //the same meter ids, without unmonitor the registry would keep reporting the stopped pool
+            new MicrometerConsumerMetrics(registry, tags).monitorExecutor(restarted);
+            assertThat(registry.get("nats.consumer.pool.size").gauge().value()).isEqualTo(5);
+        } finally {
+            stopped.shutdownNow();
+            restarted.shutdownNow();
+        }
+    }
+
+    @Test
+    void countersSurviveARestart() {
+        new MicrometerConsumerMetrics(registry, tags).acked(3);
+        MicrometerConsumerMetrics restarted = new MicrometerConsumerMetrics(registry, tags);
+        restarted.unmonitor();
+        restarted.acked(2);
+        assertThat(registry.get("nats.consumer.ack").counter().count()).isEqualTo(5);
+    }
+}